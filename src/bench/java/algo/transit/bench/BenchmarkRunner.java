@@ -0,0 +1,37 @@
+package algo.transit.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Runs the benchmark suite and writes the results as JSON.
+ * Usage: BenchmarkRunner [result.json] [JMH options...], e.g. "target/jmh-result.json PathfindingBenchmark -f 2"
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        Path result = Path.of(args.length > 0 ? args[0] : "target/jmh-result.json");
+        if (result.getParent() != null) Files.createDirectories(result.getParent());
+
+        String[] jmhArgs = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[0];
+        CommandLineOptions commandLine = new CommandLineOptions(jmhArgs);
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        // Without an explicit pattern, run every benchmark of this package
+        if (commandLine.getIncludes().isEmpty()) builder.include(BenchmarkRunner.class.getPackageName() + "\\..*");
+
+        Options options = builder
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                .build();
+        new Runner(options).run();
+        System.out.println("Benchmark results written to " + result);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+package algo.transit.bench;
+
+import algo.transit.enums.TType;
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.Trip;
+import algo.transit.models.pathfinder.Connection;
+import algo.transit.models.pathfinder.CostModel;
+import algo.transit.models.pathfinder.TPreference;
+import algo.transit.pathfinders.DPathfinder;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * calculateTransitionCost over ride connections taken from the generated trips, with and without a mode change,
+ * and the per-search cost of compiling the preferences into a {@link CostModel}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CostBenchmark {
+    @Param({"time", "transfers"})
+    public String goal;
+
+    @Param({"NONE", "BUS"})
+    public String lastMode;
+
+    private CostProbe probe;
+    // Null for NONE, the first connection of a path
+    private TType previousMode;
+    private TPreference preferences;
+    private CostModel costModel;
+    private Connection[] connections;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp(NetworkState state) {
+        probe = new CostProbe(state.stops);
+        preferences = NetworkState.defaultPreferences();
+        preferences.setOptimizationGoal(goal);
+        costModel = CostModel.compile(preferences);
+        previousMode = lastMode.equals("NONE") ? null : TType.fromString(lastMode);
+
+        List<Connection> built = new ArrayList<>();
+        for (Trip trip : state.network.getTrips().values()) {
+            if (trip.getRoute() == null) continue;
+            Stop[] stops = trip.getStops();
+            LocalTime[] times = trip.getTimes();
+            for (int i = 0; i + 1 < stops.length; i++) {
+                built.add(new Connection(
+                        stops[i].getIndex(),
+                        stops[i + 1].getIndex(),
+                        trip.getTripId(),
+                        trip.getRoute().getRouteId(),
+                        trip.getRoute().getShortName(),
+                        times[i],
+                        times[i + 1],
+                        trip.getRoute().getType()
+                ));
+            }
+        }
+        connections = built.toArray(Connection[]::new);
+    }
+
+    @Benchmark
+    public double calculateTransitionCost() {
+        Connection connection = connections[next++ % connections.length];
+        return probe.cost(connection.departureTime().minusMinutes(10), connection, previousMode, costModel);
+    }
+
+    @Benchmark
+    public CostModel compileCostModel() {
+        return CostModel.compile(preferences);
+    }
+
+    /**
+     * Exposes the protected cost function without changing its visibility in the main code
+     */
+    static class CostProbe extends DPathfinder {
+        CostProbe(Map<String, Stop> stops) {
+            super(stops);
+        }
+
+        double cost(LocalTime currentTime, Connection connection, TType lastMode, CostModel costModel) {
+            return calculateTransitionCost(currentTime, connection, lastMode, costModel);
+        }
+    }
+}
\ No newline at end of file
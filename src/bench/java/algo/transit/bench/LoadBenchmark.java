@@ -0,0 +1,84 @@
+package algo.transit.bench;
+
+import algo.transit.models.common.TransitNetwork;
+import algo.transit.models.loader.AgencyFeed;
+import algo.transit.models.loader.StopTimesTable;
+import algo.transit.services.CSVService;
+import algo.transit.services.GTFSGenerator;
+import algo.transit.services.StopTimesParser;
+import algo.transit.utils.ByteKeyIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * CSV loading: the whole network, and the stop_times parser on its own.
+ * Parsed rows are reported as an auxiliary counter, so the JSON result also holds rows per second.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+    @Param({"1.0"})
+    public double scale;
+
+    private List<AgencyFeed> feeds;
+    private Path root;
+    private Path stopTimes;
+    private ByteKeyIndex tripIndex;
+    private ByteKeyIndex stopIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("gtfs-load-bench");
+        feeds = new GTFSGenerator(GTFSGenerator.Config.defaults().scaled(scale)).write(root);
+        stopTimes = feeds.getFirst().stopTimes();
+
+        // The stop_times parser resolves against the IDs of the first agency
+        tripIndex = new ByteKeyIndex(firstColumn(feeds.getFirst().trips()));
+        stopIndex = new ByteKeyIndex(firstColumn(feeds.getFirst().stops()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        NetworkState.deleteRecursively(root);
+    }
+
+    // A fresh service per invocation, so no state is carried over between loads
+    @Benchmark
+    public TransitNetwork loadNetwork() {
+        return new CSVService(feeds).loadNetwork();
+    }
+
+    @Benchmark
+    public StopTimesTable parseStopTimes(RowCounter counter) throws IOException {
+        StopTimesTable table = new StopTimesParser(tripIndex, stopIndex).parse(stopTimes);
+        counter.rows += table.size();
+        return table;
+    }
+
+    private static List<String> firstColumn(Path csv) throws IOException {
+        try (Stream<String> lines = Files.lines(csv)) {
+            return lines.skip(1).map(line -> line.substring(0, line.indexOf(','))).toList();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class RowCounter {
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+}
\ No newline at end of file
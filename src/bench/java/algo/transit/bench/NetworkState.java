@@ -0,0 +1,62 @@
+package algo.transit.bench;
+
+import algo.transit.enums.TType;
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.TransitNetwork;
+import algo.transit.models.pathfinder.TPreference;
+import algo.transit.services.CSVService;
+import algo.transit.services.GTFSGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * A generated feed, loaded once per trial and shared by all benchmark threads
+ */
+@State(Scope.Benchmark)
+public class NetworkState {
+    // Fraction of GTFSGenerator.Config.defaults(): 500 stops and 25 routes per agency
+    @Param({"0.25"})
+    public double scale;
+
+    public Path root;
+    public CSVService csvService;
+    public TransitNetwork network;
+    public Map<String, Stop> stops;
+    public List<String[]> odPairs;
+    public TPreference preferences;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        GTFSGenerator generator = new GTFSGenerator(GTFSGenerator.Config.defaults().scaled(scale));
+        root = Files.createTempDirectory("gtfs-bench");
+        csvService = new CSVService(generator.write(root));
+        network = csvService.loadNetwork();
+        stops = network.getStops();
+        odPairs = generator.odPairs(16);
+        preferences = defaultPreferences();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteRecursively(root);
+    }
+
+    /**
+     * Same defaults as the command line
+     */
+    public static TPreference defaultPreferences() {
+        return new TPreference(80.0, 10.0, new EnumMap<>(TType.class), new ArrayList<>(), "time", null);
+    }
+
+    public static void deleteRecursively(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+}
\ No newline at end of file
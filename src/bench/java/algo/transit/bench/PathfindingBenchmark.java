@@ -0,0 +1,54 @@
+package algo.transit.bench;
+
+import algo.transit.models.pathfinder.TPreference;
+import algo.transit.models.pathfinder.Transition;
+import algo.transit.pathfinders.AbstractPathfinder;
+import algo.transit.pathfinders.DPathfinder;
+import algo.transit.pathfinders.MatrixPathfinder;
+import algo.transit.pathfinders.McRaptorPathfinder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end findPath over a fixed set of origin/destination pairs; one operation answers the whole set
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PathfindingBenchmark {
+    private static final LocalTime START_TIME = LocalTime.of(8, 0);
+
+    @Param({"dijkstra", "earliest-arrival", "pareto"})
+    public String algorithm;
+
+    private AbstractPathfinder pathfinder;
+    private List<String[]> odPairs;
+    private TPreference preferences;
+
+    @Setup(Level.Trial)
+    public void setUp(NetworkState state) {
+        this.odPairs = state.odPairs;
+        this.preferences = state.preferences;
+        this.pathfinder = switch (algorithm) {
+            case "earliest-arrival" -> new MatrixPathfinder(state.stops);
+            case "pareto" -> new McRaptorPathfinder(state.stops);
+            default -> new DPathfinder(state.stops);
+        };
+        pathfinder.setStations(state.network.getStations());
+    }
+
+    @Benchmark
+    public void findPath(Blackhole blackhole) {
+        for (String[] pair : odPairs) {
+            List<Transition> path = pathfinder.findPath(pair[0], pair[1], START_TIME, preferences);
+            blackhole.consume(path);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+package algo.transit.bench;
+
+import algo.transit.models.common.TransitNetwork;
+import algo.transit.models.loader.AgencyFeed;
+import algo.transit.models.pathfinder.TPreference;
+import algo.transit.pathfinders.DPathfinder;
+import algo.transit.services.CSVService;
+import algo.transit.services.GTFSGenerator;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures how loading and routing scale with the size of a generated network.
+ * For every scale factor it records load time, retained heap and query latency percentiles, and writes them as JSON.
+ * This is a plain program rather than a JMH benchmark, since each point needs a fresh feed and a single cold load.
+ * Usage: ScalingBenchmark [result.json] [factors, e.g. 1,2,5,10] [queries per factor]
+ */
+public class ScalingBenchmark {
+    private static final LocalTime START_TIME = LocalTime.of(8, 0);
+
+    public static void main(String[] args) throws IOException {
+        Path result = Path.of(args.length > 0 ? args[0] : "target/scaling-result.json");
+        double[] factors = Arrays.stream((args.length > 1 ? args[1] : "1,2,5,10").split(","))
+                .mapToDouble(Double::parseDouble)
+                .toArray();
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        List<Point> points = new ArrayList<>();
+        for (double factor : factors) points.add(measure(GTFSGenerator.Config.defaults().scaled(factor), factor, queries));
+
+        if (result.getParent() != null) Files.createDirectories(result.getParent());
+        Files.writeString(result, toJson(points), StandardCharsets.UTF_8);
+
+        System.out.println("scale   stops   stop_times  load_ms  heap_mb   p50_ms   p90_ms   p99_ms  found");
+        for (Point p : points) {
+            System.out.printf(Locale.ROOT, "%5.2f %6d %11d %8d %8.1f %8.2f %8.2f %8.2f %4d/%d%n",
+                    p.scale, p.stops, p.stopTimes, p.loadMillis, p.heapBytes / 1048576.0,
+                    p.latencies.percentile(50), p.latencies.percentile(90), p.latencies.percentile(99), p.found, queries);
+        }
+        System.out.println("Scaling results written to " + result);
+    }
+
+    private static @NotNull Point measure(
+            GTFSGenerator.Config config,
+            double factor,
+            int queries
+    ) throws IOException {
+        GTFSGenerator generator = new GTFSGenerator(config);
+        Path root = Files.createTempDirectory("gtfs-scaling");
+        try {
+            List<AgencyFeed> feeds = generator.write(root);
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+            long heapBefore = usedHeapAfterGc(memory);
+            long start = System.nanoTime();
+            TransitNetwork network = new CSVService(feeds).loadNetwork();
+            long loadMillis = (System.nanoTime() - start) / 1_000_000;
+            long heapBytes = usedHeapAfterGc(memory) - heapBefore;
+
+            long stopTimes = network.getTrips().values().stream().mapToLong(trip -> trip.getStops().length).sum();
+            DPathfinder pathfinder = new DPathfinder(network.getStops());
+            pathfinder.setStations(network.getStations());
+            TPreference preferences = NetworkState.defaultPreferences();
+            List<String[]> odPairs = generator.odPairs(queries);
+
+            // One untimed pass warms up the JIT, so the percentiles describe steady-state queries
+            for (String[] pair : odPairs) pathfinder.findPath(pair[0], pair[1], START_TIME, preferences);
+
+            double[] latencies = new double[odPairs.size()];
+            int found = 0;
+            for (int i = 0; i < odPairs.size(); i++) {
+                long queryStart = System.nanoTime();
+                boolean reached = !pathfinder.findPath(odPairs.get(i)[0], odPairs.get(i)[1], START_TIME, preferences).isEmpty();
+                latencies[i] = (System.nanoTime() - queryStart) / 1e6;
+                if (reached) found++;
+            }
+
+            // Keep the network reachable until the heap has been measured
+            return new Point(factor, network.getStops().size(), stopTimes, loadMillis, heapBytes, new Latencies(latencies), found);
+        } finally {
+            NetworkState.deleteRecursively(root);
+        }
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static @NotNull String toJson(List<Point> points) {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < points.size(); i++) {
+            Point p = points.get(i);
+            json.append(String.format(Locale.ROOT,
+                    "  {\"scale\": %.2f, \"stops\": %d, \"stopTimes\": %d, \"loadMillis\": %d, \"heapBytes\": %d, " +
+                            "\"queries\": %d, \"found\": %d, \"latencyMillis\": {\"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f, \"max\": %.3f}}",
+                    p.scale, p.stops, p.stopTimes, p.loadMillis, p.heapBytes, p.latencies.values.length, p.found,
+                    p.latencies.percentile(50), p.latencies.percentile(90), p.latencies.percentile(99), p.latencies.percentile(100)));
+            json.append(i + 1 < points.size() ? ",\n" : "\n");
+        }
+        return json.append("]\n").toString();
+    }
+
+    private record Point(
+            double scale,
+            int stops,
+            long stopTimes,
+            long loadMillis,
+            long heapBytes,
+            Latencies latencies,
+            int found
+    ) {
+    }
+
+    private record Latencies(double[] values) {
+        Latencies {
+            values = values.clone();
+            Arrays.sort(values);
+        }
+
+        /**
+         * Nearest-rank percentile
+         */
+        double percentile(double p) {
+            if (values.length == 0) return 0;
+            int rank = (int) Math.ceil(p / 100 * values.length);
+            return values[Math.clamp(rank - 1, 0, values.length - 1)];
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+package algo.transit.bench;
+
+import algo.transit.models.common.Stop;
+import algo.transit.utils.QuadTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QuadTree.findNearby around the generated stops, at walking and transfer radii
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpatialBenchmark {
+    @Param({"200", "800"})
+    public double radius;
+
+    private QuadTree tree;
+    private Stop[] queries;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp(NetworkState state) {
+        // Same bounds as the pathfinders' index
+        tree = new QuadTree(2.0, 49.0, 7.0, 52.0, 0);
+        for (Stop stop : state.stops.values()) tree.insert(stop);
+        queries = state.stops.values().toArray(Stop[]::new);
+    }
+
+    @Benchmark
+    public List<Stop> findNearby() {
+        Stop stop = queries[next++ % queries.length];
+        return tree.findNearby(stop.getLatitude(), stop.getLongitude(), radius);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package algo.transit.bench;
+
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.Trip;
+import algo.transit.models.common.TripPattern;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trip.getTimeForStop for the last stop of each trip, which is the worst case of the lookup,
+ * and the binary search for the first catchable trip of a pattern
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TripBenchmark {
+    private Trip[] trips;
+    private Stop[] lastStops;
+    private int next = 0;
+    private TripPattern[] patterns;
+    private int[] departures;
+
+    @Setup(Level.Trial)
+    public void setUp(NetworkState state) {
+        trips = state.network.getTrips().values().stream().filter(trip -> trip.getStops().length > 0).toArray(Trip[]::new);
+        lastStops = new Stop[trips.length];
+        for (int i = 0; i < trips.length; i++) lastStops[i] = trips[i].getStops()[trips[i].getStops().length - 1];
+
+        // Each lookup searches from the departure of some trip of the pattern
+        patterns = new TripPattern[trips.length];
+        departures = new int[trips.length];
+        for (int i = 0; i < trips.length; i++) {
+            patterns[i] = trips[i].getPattern();
+            departures[i] = patterns[i].time(trips[i].getRow(), 0);
+        }
+    }
+
+    @Benchmark
+    public LocalTime getTimeForStop() {
+        int i = next++ % trips.length;
+        return trips[i].getTimeForStop(lastStops[i]);
+    }
+
+    @Benchmark
+    public int firstDeparture() {
+        int i = next++ % patterns.length;
+        return patterns[i].firstDeparture(0, departures[i]);
+    }
+}
\ No newline at end of file
@@ -1,103 +1,346 @@
 package algo.transit;
 
-import algo.transit.models.common.Route;
 import algo.transit.models.common.Stop;
-import algo.transit.models.common.Trip;
+import algo.transit.models.common.Timetable;
+import algo.transit.models.common.TransitNetwork;
+import algo.transit.models.pathfinder.HubLabels;
+import algo.transit.models.pathfinder.Journey;
+import algo.transit.models.pathfinder.PathfinderMetrics;
+import algo.transit.models.pathfinder.QueryStats;
 import algo.transit.models.pathfinder.TPreference;
 import algo.transit.models.pathfinder.Transition;
+import algo.transit.models.pathfinder.TravelTimeMatrix;
 import algo.transit.models.visualizer.StateRecorder;
+import algo.transit.pathfinders.AbstractPathfinder;
 import algo.transit.pathfinders.DPathfinder;
+import algo.transit.pathfinders.McRaptorPathfinder;
 import algo.transit.services.CSVService;
+import algo.transit.services.HubLabelService;
+import algo.transit.services.MatrixService;
+import algo.transit.services.NetworkReloader;
+import algo.transit.services.RealtimeService;
 import algo.transit.utils.CLArgs;
 import algo.transit.utils.CLParser;
+import algo.transit.utils.Log;
 import algo.transit.utils.QuadTree;
 import algo.transit.visualizers.DVisualizer;
+import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
+import static algo.transit.utils.PathPrinter.printParetoPaths;
 import static algo.transit.utils.PathPrinter.printPath;
 
 public class BETransitPathfinder {
+    // Conservative: a degree of longitude is shorter than this at Belgian latitudes, so the box only grows
+    private static final double METERS_PER_DEGREE = 70_000.0;
+
     public static void main(String[] args) {
         try {
             CLArgs cmdArgs = CLParser.parseCommandLineArgs(args);
-            CSVService csvService = new CSVService();
+            Log.setLevel(cmdArgs.getLogLevel());
+            CSVService csvService = CSVService.fromDirectory(
+                    cmdArgs.getDataRoot() == null ? CSVService.DEFAULT_DATA_ROOT : Path.of(cmdArgs.getDataRoot()),
+                    cmdArgs.getAgencies()
+            );
 
-            System.out.println("Finding path from " + cmdArgs.getStartStop() + " to " + cmdArgs.getEndStop() + " at " + cmdArgs.getStartTime());
-            if (cmdArgs.isArriveBy()) System.out.println("Mode: Arrive by (paths calculated to arrive at specified time)");
+            if (cmdArgs.getMatrixOutput() != null) {
+                Log.info("Computing travel-time matrix at %s", cmdArgs.getStartTime());
+            } else {
+                Log.info("Finding path from %s to %s at %s", cmdArgs.getStartStop(), cmdArgs.getEndStop(), cmdArgs.getStartTime());
+            }
+            if (cmdArgs.isArriveBy()) Log.info("Mode: Arrive by (paths calculated to arrive at specified time)");
 
             long loadStartTime = System.currentTimeMillis();
 
-            long start = System.currentTimeMillis();
-            Map<String, Route> routes = csvService.getRoutes();
-            System.out.println("Routes loaded in " + (System.currentTimeMillis() - start) + " ms");
-
-            start = System.currentTimeMillis();
-            Map<String, Stop> stops = csvService.getStops();
-            System.out.println("Stops loaded in " + (System.currentTimeMillis() - start) + " ms");
-
-            start = System.currentTimeMillis();
-            Map<String, Trip> trips = csvService.getTrips(routes);
-            System.out.println("Trips loaded in " + (System.currentTimeMillis() - start) + " ms");
-
-            start = System.currentTimeMillis();
-            csvService.linkData(stops, trips);
-            System.out.println("Linking data took " + (System.currentTimeMillis() - start) + " ms");
+            NetworkReloader reloader = null;
+            TransitNetwork network;
+            if (cmdArgs.getWatchSeconds() > 0) {
+                if (cmdArgs.isLazyLoad()) {
+                    Log.warn("--watch reloads whole agencies, ignoring --lazy-load");
+                    cmdArgs.setLazyLoad(false);
+                }
+                reloader = new NetworkReloader(csvService);
+                network = reloader.current();
+            } else {
+                network = cmdArgs.isLazyLoad() ? csvService.loadLazyNetwork() : csvService.loadNetwork();
+            }
 
             long loadTime = System.currentTimeMillis() - loadStartTime;
-            System.out.println("Data loading time: " + (loadTime / 1000.0) + " seconds");
-
-            Stop startStop = stops.get(cmdArgs.getStartStop());
-            Stop endStop = stops.get(cmdArgs.getEndStop());
-
-            if (startStop != null && endStop != null) {
-                double distance = QuadTree.calculateDistance(
-                        startStop.getLatitude(), startStop.getLongitude(),
-                        endStop.getLatitude(), endStop.getLongitude()
-                );
-                System.out.println("Distance between stops: " + distance + " meters");
-            }
+            Log.info("%s", csvService.getTimeline().format());
+            Log.info("Data loading time: %s seconds", loadTime / 1000.0);
 
             TPreference preferences = new TPreference(
                     cmdArgs.getWalkingSpeed(),
                     cmdArgs.getMaxWalkTime(),
                     cmdArgs.getModeWeights(),
                     cmdArgs.getForbiddenModes(),
-                    cmdArgs.getOptimizationGoal()
+                    cmdArgs.getOptimizationGoal(),
+                    cmdArgs.getServiceDate()
             );
 
-            DPathfinder dPathfinder = new DPathfinder(stops);
+            runQuery(cmdArgs, csvService, network, preferences);
+            if (reloader != null) watch(cmdArgs, csvService, reloader, preferences);
+        } catch (Exception e) {
+            Log.error("Error: " + e.getMessage(), e);
+        }
+    }
 
-            long startTime = System.currentTimeMillis();
-            List<Transition> path;
+    /**
+     * Answers the query, or computes the matrix, on the network with freshly built pathfinders
+     */
+    private static void runQuery(
+            @NotNull CLArgs cmdArgs,
+            @NotNull CSVService csvService,
+            @NotNull TransitNetwork network,
+            @NotNull TPreference preferences
+    ) throws Exception {
+        Map<String, Stop> stops = network.getStops();
+        HubLabels hubLabels = loadHubLabels(cmdArgs, csvService, network);
 
-            if (cmdArgs.isArriveBy()) {
-                // TODO: Implement reverse pathfinding
-                System.out.println("Arrive-by mode not yet implemented. Using departure time instead.");
-                path = dPathfinder.findPath(cmdArgs.getStartStop(), cmdArgs.getEndStop(), cmdArgs.getStartTime(), preferences);
-            } else {
-                path = dPathfinder.findPath(cmdArgs.getStartStop(), cmdArgs.getEndStop(), cmdArgs.getStartTime(), preferences);
-            }
+        if (cmdArgs.getMatrixOutput() != null) {
+            computeMatrix(cmdArgs, network, preferences, hubLabels);
+            return;
+        }
+
+        Stop startStop = stops.get(cmdArgs.getStartStop());
+        Stop endStop = stops.get(cmdArgs.getEndStop());
+
+        if (startStop != null && endStop != null) {
+            double distance = QuadTree.calculateDistance(
+                    startStop.getLatitude(), startStop.getLongitude(),
+                    endStop.getLatitude(), endStop.getLongitude()
+            );
+            Log.info("Distance between stops: %s meters", distance);
+
+            if (cmdArgs.isLazyLoad()) preloadAround(network, startStop, endStop, preferences);
+        }
+        RealtimeService realtime = loadRealtime(cmdArgs, network);
+
+        if (cmdArgs.getOptimizationGoal().equals("pareto")) {
+            McRaptorPathfinder mcPathfinder = new McRaptorPathfinder(stops);
+            mcPathfinder.setAgencyLoader(network.getLoader());
+            mcPathfinder.setTimetableSource(realtime::current);
+            mcPathfinder.setHubLabels(hubLabels);
+            mcPathfinder.setStations(network.getStations());
 
-            long executionTime = System.currentTimeMillis() - startTime;
+            List<Journey> journeys = mcPathfinder.findParetoPaths(cmdArgs.getStartStop(), cmdArgs.getEndStop(), cmdArgs.getStartTime(), preferences);
+            printPathfindingTime(mcPathfinder);
 
-            System.out.println("Pathfinding time: " + (executionTime / 1000.0) + " seconds");
-            printPath(path, cmdArgs.getOutputFormat(), cmdArgs.isShowStats(), stops);
+            printParetoPaths(journeys, cmdArgs.getOutputFormat(), cmdArgs.isShowStats(), stops);
+            reportQueryStats(cmdArgs, mcPathfinder);
+            return;
+        }
+
+        DPathfinder dPathfinder = new DPathfinder(stops);
+        dPathfinder.setAgencyLoader(network.getLoader());
+        dPathfinder.setTimetableSource(realtime::current);
+        dPathfinder.setBidirectional(cmdArgs.isBidirectional());
+        dPathfinder.setHubLabels(hubLabels);
+        dPathfinder.setStations(network.getStations());
+
+        List<Transition> path;
+
+        if (cmdArgs.isArriveBy()) {
+            // TODO: Implement reverse pathfinding
+            Log.warn("Arrive-by mode not yet implemented. Using departure time instead.");
+            path = dPathfinder.findPath(cmdArgs.getStartStop(), cmdArgs.getEndStop(), cmdArgs.getStartTime(), preferences);
+        } else {
+            path = dPathfinder.findPath(cmdArgs.getStartStop(), cmdArgs.getEndStop(), cmdArgs.getStartTime(), preferences);
+        }
+
+        printPathfindingTime(dPathfinder);
+        printPath(path, cmdArgs.getOutputFormat(), cmdArgs.isShowStats(), stops);
+        reportQueryStats(cmdArgs, dPathfinder);
+        if (cmdArgs.isShowStats()) {
+            StateRecorder recorder = dPathfinder.recorder;
+            System.out.println("Explored states: " + recorder.getTotalSteps() + " (" + recorder.getForwardSteps() +
+                    " forward, " + recorder.getBackwardSteps() + " backward)");
+        }
 
-            if (cmdArgs.isVisualize()) {
-                StateRecorder recorder = dPathfinder.recorder;
+        if (cmdArgs.isVisualize()) {
+            StateRecorder recorder = dPathfinder.recorder;
 
-                DVisualizer visualizer = new DVisualizer(stops);
-                visualizer.setAlgorithmData(recorder);
-                visualizer.setVisible(true);
+            DVisualizer visualizer = new DVisualizer(stops);
+            visualizer.setAlgorithmData(recorder);
+            visualizer.setVisible(true);
 
-                System.out.println("Visualization window is open. Close it to exit the program.");
-                visualizer.waitForCompletion();
+            Log.info("Visualization window is open. Close it to exit the program.");
+            visualizer.waitForCompletion();
+        }
+    }
+
+    /**
+     * Checks the feeds every --watch seconds and, whenever a reload publishes a new network,
+     * answers the query again on it with new pathfinders. Runs until the process is stopped.
+     */
+    private static void watch(
+            @NotNull CLArgs cmdArgs,
+            @NotNull CSVService csvService,
+            @NotNull NetworkReloader reloader,
+            @NotNull TPreference preferences
+    ) throws Exception {
+        Log.info("Watching the feeds every %d seconds, stop with Ctrl+C", cmdArgs.getWatchSeconds());
+        TransitNetwork network = reloader.current();
+        while (true) {
+            Thread.sleep(cmdArgs.getWatchSeconds() * 1000L);
+            TransitNetwork next = reloader.reload();
+            if (next == network) continue;
+
+            network = next;
+            runQuery(cmdArgs, csvService, network, preferences);
+        }
+    }
+
+    private static void printPathfindingTime(@NotNull AbstractPathfinder pathfinder) {
+        // Results go straight to stdout, after everything the search has logged
+        Log.flush();
+        QueryStats stats = pathfinder.getLastQueryStats();
+        if (stats != null) System.out.println("Pathfinding time: " + (stats.getLatencyNanos() / 1e9) + " seconds");
+    }
+
+    /**
+     * Prints the search counters with --show-stats, and writes them with the aggregated metrics to --stats-json
+     */
+    private static void reportQueryStats(
+            @NotNull CLArgs cmdArgs,
+            @NotNull AbstractPathfinder pathfinder
+    ) throws IOException {
+        QueryStats stats = pathfinder.getLastQueryStats();
+        if (cmdArgs.isShowStats() && stats != null) System.out.println(stats.format());
+        writeStatsJson(cmdArgs, stats, pathfinder.getMetrics());
+    }
+
+    private static void writeStatsJson(
+            @NotNull CLArgs cmdArgs,
+            QueryStats stats,
+            @NotNull PathfinderMetrics metrics
+    ) throws IOException {
+        if (cmdArgs.getStatsOutput() == null) return;
+
+        String json = "{\"query\": " + (stats == null ? "null" : stats.toJson()) + ", \"metrics\": " + metrics.toJson() + "}\n";
+        Files.writeString(Path.of(cmdArgs.getStatsOutput()), json, StandardCharsets.UTF_8);
+        Log.info("Stats written to %s", cmdArgs.getStatsOutput());
+    }
+
+    /**
+     * Applies the --delays file, if any, on top of the schedule. In lazy mode only agencies loaded so far are updated.
+     */
+    private static @NotNull RealtimeService loadRealtime(
+            @NotNull CLArgs cmdArgs,
+            @NotNull TransitNetwork network
+    ) {
+        RealtimeService realtime = new RealtimeService(network.getTrips(), network.getLoader());
+        if (cmdArgs.getDelaysFile() != null) {
+            Timetable timetable = realtime.apply(Path.of(cmdArgs.getDelaysFile()));
+            Log.info("Applied %d trip updates (timetable version %d)", timetable.getUpdates().size(), timetable.getVersion());
+        }
+        return realtime;
+    }
+
+    /**
+     * Reads the --hub-labels file, or builds and writes it when it is missing or was built from other feeds.
+     * Labels are only built from a fully loaded network, with the walking limits of this run.
+     */
+    private static HubLabels loadHubLabels(
+            @NotNull CLArgs cmdArgs,
+            @NotNull CSVService csvService,
+            @NotNull TransitNetwork network
+    ) {
+        if (cmdArgs.getHubLabelsFile() == null) return null;
+
+        Path path = Path.of(cmdArgs.getHubLabelsFile());
+        long signature = HubLabelService.signature(csvService.getAgencies());
+        if (Files.exists(path)) {
+            try {
+                HubLabels labels = HubLabelService.read(path, network.getStops(), signature);
+                Log.info("Read hub labels from %s", path);
+                return labels;
+            } catch (IOException e) {
+                Log.warn("Rebuilding hub labels: %s", e.getMessage());
             }
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
-            e.printStackTrace();
         }
+        if (cmdArgs.isLazyLoad()) {
+            Log.warn("Hub labels need every timetable; run once without --lazy-load to build %s", path);
+            return null;
+        }
+
+        HubLabels labels = HubLabelService.build(network.getStops(), cmdArgs.getWalkingSpeed(), cmdArgs.getMaxWalkTime(), signature);
+        try {
+            HubLabelService.write(labels, network.getStops(), path);
+            Log.info("Hub labels written to %s", path);
+        } catch (IOException e) {
+            Log.warn("Could not write hub labels to %s: %s", path, e.getMessage());
+        }
+        return labels;
+    }
+
+    /**
+     * Loads the agencies serving the box spanned by both endpoints, widened by the maximum walking distance
+     */
+    private static void preloadAround(
+            TransitNetwork network,
+            Stop startStop,
+            Stop endStop,
+            TPreference preferences
+    ) {
+        double margin = preferences.getWalkingSpeed() * preferences.getMaxWalkingTime() / METERS_PER_DEGREE;
+        network.getLoader().preload(
+                Math.min(startStop.getLatitude(), endStop.getLatitude()) - margin,
+                Math.min(startStop.getLongitude(), endStop.getLongitude()) - margin,
+                Math.max(startStop.getLatitude(), endStop.getLatitude()) + margin,
+                Math.max(startStop.getLongitude(), endStop.getLongitude()) + margin
+        );
+    }
+
+    private static void computeMatrix(
+            CLArgs cmdArgs,
+            TransitNetwork network,
+            TPreference preferences,
+            HubLabels hubLabels
+    ) throws Exception {
+        List<String> origins = MatrixService.parseStopIds(cmdArgs.getStartStop());
+        List<String> destinations = MatrixService.parseStopIds(cmdArgs.getEndStop());
+        Log.info("Matrix size: %d origins x %d destinations", origins.size(), destinations.size());
+
+        MatrixService matrixService = new MatrixService(network.getStops());
+        matrixService.setAgencyLoader(network.getLoader());
+        matrixService.setTimetableSource(loadRealtime(cmdArgs, network)::current);
+        matrixService.setHubLabels(hubLabels);
+        matrixService.setStations(network.getStations());
+        int step = Math.max(1, origins.size() / 20);
+
+        long startTime = System.nanoTime();
+        TravelTimeMatrix matrix = matrixService.computeMatrix(
+                origins,
+                destinations,
+                cmdArgs.getStartTime(),
+                preferences,
+                cmdArgs.getMaxTravelTime(),
+                (completed, total) -> {
+                    if (completed % step == 0 || completed == total) {
+                        Log.info("Matrix progress: %d/%d origins", completed, total);
+                    }
+                }
+        );
+        Log.info("Matrix computation time: %s seconds", (System.nanoTime() - startTime) / 1e9);
+        if (cmdArgs.isShowStats()) {
+            Log.flush();
+            System.out.println(matrixService.getMetrics().format());
+        }
+        writeStatsJson(cmdArgs, null, matrixService.getMetrics());
+
+        Path output = Path.of(cmdArgs.getMatrixOutput());
+        if (cmdArgs.getMatrixFormat().equals("binary")) {
+            MatrixService.writeBinary(matrix, output);
+        } else {
+            MatrixService.writeCSV(matrix, output);
+        }
+        Log.info("Matrix written to %s", output);
     }
 }
\ No newline at end of file
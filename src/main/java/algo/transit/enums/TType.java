@@ -1,5 +1,7 @@
 package algo.transit.enums;
 
+import java.util.Collection;
+
 public enum TType {
     BUS,
     TRAIN,
@@ -8,13 +10,40 @@ public enum TType {
     FOOT,
     UNKNOWN;
 
+    // values() copies the array on every call
+    private static final TType[] VALUES = values();
+
     public static TType fromString(String typeStr) {
         if (typeStr == null || typeStr.isEmpty()) return UNKNOWN;
 
+        // Modes written by this program are upper case already, so look them up without allocating
+        for (TType type : VALUES) {
+            if (type.name().equals(typeStr)) return type;
+        }
+
         try {
             return valueOf(typeStr.toUpperCase());
         } catch (IllegalArgumentException e) {
             return UNKNOWN;
         }
     }
+
+    /**
+     * Bit of this mode in a mode mask
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public static int mask(Collection<TType> types) {
+        int mask = 0;
+        if (types != null) {
+            for (TType type : types) mask |= type.bit();
+        }
+        return mask;
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
 }
\ No newline at end of file
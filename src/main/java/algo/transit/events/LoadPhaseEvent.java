@@ -0,0 +1,23 @@
+package algo.transit.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One loading phase of one agency, as recorded by {@link algo.transit.models.loader.LoadTimeline}
+ */
+@Name("algo.transit.LoadPhase")
+@Label("Load Phase")
+@Category({"Transit", "Loading"})
+@Description("Reading or linking one part of a GTFS feed")
+@StackTrace(false)
+public class LoadPhaseEvent extends jdk.jfr.Event {
+    @Label("Agency")
+    public String agency;
+
+    @Label("Phase")
+    public String phase;
+}
\ No newline at end of file
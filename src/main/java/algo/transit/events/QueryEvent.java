@@ -0,0 +1,39 @@
+package algo.transit.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A single search, spanning the same interval as its {@link algo.transit.models.pathfinder.QueryStats}
+ */
+@Name("algo.transit.Query")
+@Label("Query")
+@Category({"Transit", "Search"})
+@Description("One pathfinding search from an origin stop")
+@StackTrace(false)
+public class QueryEvent extends jdk.jfr.Event {
+    @Label("Algorithm")
+    public String algorithm;
+
+    @Label("Origin")
+    public String origin;
+
+    @Label("Destination")
+    @Description("Target stop, or null for one-to-all searches")
+    public String destination;
+
+    @Label("Found")
+    public boolean found;
+
+    @Label("Settled Labels")
+    public long settledLabels;
+
+    @Label("Relaxed Edges")
+    public long relaxedEdges;
+
+    @Label("Queue Peak")
+    public int queuePeak;
+}
\ No newline at end of file
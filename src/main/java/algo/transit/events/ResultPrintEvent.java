@@ -0,0 +1,26 @@
+package algo.transit.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Writing the found route or Pareto set to stdout
+ */
+@Name("algo.transit.ResultPrint")
+@Label("Result Print")
+@Category({"Transit", "Output"})
+@Description("Formatting and printing the search result")
+@StackTrace(false)
+public class ResultPrintEvent extends jdk.jfr.Event {
+    @Label("Format")
+    public String format;
+
+    @Label("Journeys")
+    public int journeys;
+
+    @Label("Segments")
+    public int segments;
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package algo.transit.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Construction of a pathfinder's stop QuadTree
+ */
+@Name("algo.transit.SpatialIndexBuild")
+@Label("Spatial Index Build")
+@Category({"Transit", "Loading"})
+@Description("Inserting every stop into the QuadTree used for walking lookups")
+@StackTrace(false)
+public class SpatialIndexEvent extends jdk.jfr.Event {
+    @Label("Stops")
+    public int stops;
+}
\ No newline at end of file
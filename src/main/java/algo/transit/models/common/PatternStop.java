@@ -0,0 +1,10 @@
+package algo.transit.models.common;
+
+/**
+ * One visit of a trip pattern to a stop; a pattern that loops visits the same stop at several positions
+ */
+public record PatternStop(
+        TripPattern pattern,
+        int position
+) {
+}
\ No newline at end of file
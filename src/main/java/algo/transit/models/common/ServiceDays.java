@@ -0,0 +1,56 @@
+package algo.transit.models.common;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+
+/**
+ * Days on which a GTFS service runs, as a bitset over the days from its first to its last active date.
+ * Days are epoch days ({@link LocalDate#toEpochDay()}), so checking a trip is one subtraction and one bit test.
+ */
+public class ServiceDays {
+    // Passed instead of a date when calendars should be ignored
+    public static final long ANY_DAY = Long.MIN_VALUE;
+
+    private final String serviceId;
+    private final long firstDay;
+    private final long[] days;
+
+    public ServiceDays(
+            String serviceId,
+            long firstDay,
+            long @NotNull [] days
+    ) {
+        this.serviceId = serviceId;
+        this.firstDay = firstDay;
+        this.days = days;
+    }
+
+    public static long epochDay(LocalDate date) {
+        return date == null ? ANY_DAY : date.toEpochDay();
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public boolean runsOn(long epochDay) {
+        if (epochDay == ANY_DAY) return true;
+        long day = epochDay - firstDay;
+        if (day < 0 || day >= (long) days.length << 6) return false;
+        return (days[(int) (day >>> 6)] & (1L << day)) != 0;
+    }
+
+    public boolean runsOn(@NotNull LocalDate date) {
+        return runsOn(date.toEpochDay());
+    }
+
+    /**
+     * Number of days the service runs on
+     */
+    public int countDays() {
+        int count = 0;
+        for (long word : days) count += Long.bitCount(word);
+        return count;
+    }
+}
\ No newline at end of file
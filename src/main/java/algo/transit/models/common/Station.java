@@ -0,0 +1,65 @@
+package algo.transit.models.common;
+
+import algo.transit.utils.QuadTree;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Stops sharing a name and a place, such as the platforms of one interchange, see {@link algo.transit.services.StationService}.
+ * Searches walk to a station at its nearest stop and reach the others with transfers,
+ * never slower than walking straight from one to the other.
+ */
+@Value
+@EqualsAndHashCode(of = "stationId")
+@ToString(of = {"stationId", "name"})
+public class Station {
+    String stationId;
+    String name;
+    // Centroid of its stops
+    double latitude;
+    double longitude;
+    List<Stop> stops;
+    // Longest distance between two of its stops, in meters
+    double diameter;
+
+    /**
+     * Minutes to change between any two of its stops: walking across the whole station
+     */
+    public int transferMinutes(double walkingSpeed) {
+        return walkingMinutes(diameter, walkingSpeed);
+    }
+
+    /**
+     * Minutes to change from one of its stops to another: walking straight between them, which never takes longer
+     * than {@link #transferMinutes(double)}
+     */
+    public int transferMinutes(
+            @NotNull Stop from,
+            @NotNull Stop to,
+            double walkingSpeed
+    ) {
+        return Math.min(transferMinutes(walkingSpeed), walkingMinutes(distance(from, to), walkingSpeed));
+    }
+
+    /**
+     * Very short walks take no time, as in {@link algo.transit.models.pathfinder.Connection#createWalkingConnection}
+     */
+    private static int walkingMinutes(
+            double distance,
+            double walkingSpeed
+    ) {
+        int minutes = (int) Math.ceil(distance / walkingSpeed);
+        return minutes <= 1 ? 0 : minutes;
+    }
+
+    private static double distance(
+            @NotNull Stop from,
+            @NotNull Stop to
+    ) {
+        return QuadTree.calculateDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+    }
+}
\ No newline at end of file
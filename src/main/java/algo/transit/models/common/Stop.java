@@ -13,9 +13,17 @@ public class Stop {
     String name;
     double latitude;
     double longitude;
+    // Name of the feed the stop was read from
+    String agency;
+    // Dense id from the stop symbol table, -1 until the stop is indexed
+    int index = -1;
 
-    Map<String, Route> routes = new HashMap<>();
-    Map<String, Trip> trips = new HashMap<>();
+    // Replaced rather than mutated when an agency is linked lazily, so searches never see a map being filled
+    volatile Map<String, Route> routes = new HashMap<>();
+    volatile Map<String, Trip> trips = new HashMap<>();
+    volatile PatternStop[] patterns = new PatternStop[0];
+    // TType bits of every pattern serving the stop; widened before patterns are added, so it never misses one
+    volatile int modeMask;
 
     public Stop(String stopId, String name, double latitude, double longitude) {
         this.stopId = stopId;
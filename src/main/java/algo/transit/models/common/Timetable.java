@@ -0,0 +1,125 @@
+package algo.transit.models.common;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable version of the timetable that searches run against: the scheduled patterns of every stop,
+ * with the patterns of delayed or cancelled trips swapped for realtime versions.
+ * Only stops visited by an updated pattern carry their own pattern list; every other stop reads {@link Stop#getPatterns()}.
+ * Each own list remembers the scheduled list it was merged from, and is merged again if a lazily loaded agency
+ * has added patterns to the stop since; those merges are cached apart, so the lists a version was built with never change.
+ * A search reads one version from start to end, so updates published meanwhile never mix into its results.
+ */
+public final class Timetable {
+    public static final Timetable SCHEDULED = new Timetable(0, new StopPatterns[0], Map.of(), Map.of());
+
+    private final long version;
+    // Indexed by stop index; null where the scheduled patterns apply
+    private final StopPatterns[] patternsByStop;
+    // Lists merged again after a lazy agency load, by stop index; allocated on the first such merge.
+    // Racing readers may both merge a stop, which is harmless as entries are immutable and any thread computes the same one
+    private volatile AtomicReferenceArray<StopPatterns> remerged;
+    private final Map<Trip, TripUpdate> updates;
+    // Realtime versions of each updated scheduled pattern, empty when all its trips are cancelled
+    private final Map<TripPattern, TripPattern[]> replacements;
+
+    public Timetable(
+            long version,
+            StopPatterns @NotNull [] patternsByStop,
+            @NotNull Map<Trip, TripUpdate> updates,
+            @NotNull Map<TripPattern, TripPattern[]> replacements
+    ) {
+        this.version = version;
+        this.patternsByStop = patternsByStop;
+        this.updates = updates;
+        this.replacements = replacements;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Patterns to scan at the stop in this version
+     */
+    public PatternStop[] patternsAt(@NotNull Stop stop) {
+        int index = stop.getIndex();
+        PatternStop[] scheduled = stop.getPatterns();
+        if (index < 0 || index >= patternsByStop.length) return scheduled;
+
+        StopPatterns patched = patternsByStop[index];
+        if (patched == null) return scheduled;
+        if (patched.scheduled() == scheduled) return patched.patterns();
+
+        // Patterns were attached to the stop after this version was built
+        AtomicReferenceArray<StopPatterns> cache = remerged();
+        StopPatterns cached = cache.get(index);
+        if (cached != null && cached.scheduled() == scheduled) return cached.patterns();
+
+        PatternStop[] merged = merge(scheduled, replacements);
+        if (merged == null) merged = scheduled;
+        cache.set(index, new StopPatterns(scheduled, merged));
+        return merged;
+    }
+
+    private @NotNull AtomicReferenceArray<StopPatterns> remerged() {
+        AtomicReferenceArray<StopPatterns> cache = remerged;
+        if (cache != null) return cache;
+        synchronized (this) {
+            if (remerged == null) remerged = new AtomicReferenceArray<>(patternsByStop.length);
+            return remerged;
+        }
+    }
+
+    /**
+     * The scheduled list with every replaced pattern swapped for its realtime versions, or null when none is replaced
+     */
+    public static PatternStop[] merge(
+            PatternStop @NotNull [] scheduled,
+            @NotNull Map<TripPattern, TripPattern[]> replacements
+    ) {
+        List<PatternStop> visits = new ArrayList<>(scheduled.length);
+        boolean replaced = false;
+        for (PatternStop visit : scheduled) {
+            TripPattern[] versions = replacements.get(visit.pattern());
+            if (versions == null) {
+                visits.add(visit);
+                continue;
+            }
+
+            replaced = true;
+            for (TripPattern version : versions) visits.add(new PatternStop(version, visit.position()));
+        }
+        return replaced ? visits.toArray(PatternStop[]::new) : null;
+    }
+
+    /**
+     * Per-stop pattern lists this version was built with; shared, so must not be modified
+     */
+    public StopPatterns[] getPatternsByStop() {
+        return patternsByStop;
+    }
+
+    public @NotNull Map<Trip, TripUpdate> getUpdates() {
+        return Collections.unmodifiableMap(updates);
+    }
+
+    public @NotNull Map<TripPattern, TripPattern[]> getReplacements() {
+        return Collections.unmodifiableMap(replacements);
+    }
+
+    /**
+     * Realtime patterns of a stop and the scheduled list they were merged from
+     */
+    public record StopPatterns(
+            PatternStop[] scheduled,
+            PatternStop[] patterns
+    ) {
+    }
+}
\ No newline at end of file
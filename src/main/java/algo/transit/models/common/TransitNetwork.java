@@ -0,0 +1,43 @@
+package algo.transit.models.common;
+
+import algo.transit.models.loader.AgencyLoader;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Everything loaded from the GTFS feeds. In lazy mode, routes and trips fill up as the loader links agencies.
+ */
+@Value
+public class TransitNetwork {
+    Map<String, Route> routes;
+    Map<String, Stop> stops;
+    Map<String, Trip> trips;
+    // Station of each stop by its index, null for stops on their own; stops themselves do not link to it,
+    // as a reload shares the stops of unchanged agencies with the previous network
+    Station[] stations;
+    AgencyLoader loader;
+
+    public TransitNetwork(
+            Map<String, Route> routes,
+            Map<String, Stop> stops,
+            Map<String, Trip> trips,
+            Station[] stations
+    ) {
+        this(routes, stops, trips, stations, AgencyLoader.NONE);
+    }
+
+    public TransitNetwork(
+            Map<String, Route> routes,
+            Map<String, Stop> stops,
+            Map<String, Trip> trips,
+            Station[] stations,
+            AgencyLoader loader
+    ) {
+        this.routes = routes;
+        this.stops = stops;
+        this.trips = trips;
+        this.stations = stations;
+        this.loader = loader;
+    }
+}
\ No newline at end of file
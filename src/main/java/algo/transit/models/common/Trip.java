@@ -3,54 +3,76 @@ package algo.transit.models.common;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 
 import java.time.LocalTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @RequiredArgsConstructor
 @Getter
 @EqualsAndHashCode(of = "tripId")
 public class Trip {
+    private static final Stop[] NO_STOPS = new Stop[0];
+
     private final String tripId;
     private final Route route;
-    private final ArrayList<Stop> stops = new ArrayList<>();
-    private final ArrayList<LocalTime> times = new ArrayList<>();
-
-    public void addStopTime(int stopSequence, @NotNull LocalTime time, @NotNull Stop stop) {
-        // Ensure lists are large enough
-        while (stops.size() <= stopSequence) {
-            stops.add(null);
-            times.add(null);
-        }
+    // Dense id from the trip symbol table, -1 until the trip is indexed
+    @Setter
+    private int index = -1;
+    // Stop sequence and times live in the pattern, shared with every trip that has the same stops
+    private TripPattern pattern;
+    // Row of this trip in its pattern's time matrix
+    private int row = -1;
+    // Days the trip runs on, or null when the feed has no calendar for it and it runs every day
+    @Setter
+    private ServiceDays service;
+
+    void setPattern(@NotNull TripPattern pattern, int row) {
+        this.pattern = pattern;
+        this.row = row;
+    }
 
-        stops.set(stopSequence, stop);
-        times.set(stopSequence, time);
+    /**
+     * Whether the trip runs on the given epoch day, see {@link ServiceDays#epochDay}
+     */
+    public boolean runsOn(long epochDay) {
+        return service == null || service.runsOn(epochDay);
+    }
 
-        if (route != null) {
-            route.getPossibleStops().add(stop);
-            stop.getRoutes().put(route.getRouteId(), route);
-            stop.getTrips().put(tripId, this);
-        }
+    /**
+     * Stops ordered by stop_sequence, without gaps. Shared with the pattern, so must not be modified.
+     */
+    public Stop[] getStops() {
+        return pattern == null ? NO_STOPS : pattern.getStops();
+    }
+
+    public LocalTime[] getTimes() {
+        if (pattern == null) return new LocalTime[0];
+
+        LocalTime[] times = new LocalTime[pattern.length()];
+        for (int i = 0; i < times.length; i++) times[i] = pattern.timeOfDay(row, i);
+        return times;
     }
 
     public LocalTime getTimeForStop(@NotNull Stop stop) {
-        for (int i = 0; i < stops.size(); i++) {
-            if (stop.equals(stops.get(i))) {
-                return times.get(i);
-            }
+        int position = indexOf(stop);
+        return position == -1 ? null : pattern.timeOfDay(row, position);
+    }
+
+    /**
+     * Position of the stop in the trip, or -1. Stops are shared instances, so this compares references, not IDs.
+     */
+    public int indexOf(@NotNull Stop stop) {
+        Stop[] stops = getStops();
+        for (int i = 0; i < stops.length; i++) {
+            if (stops[i] == stop) return i;
         }
-        return null;
+        return -1;
     }
 
     public List<Stop> getOrderedStops() {
-        List<Stop> result = new ArrayList<>();
-        for (Stop stop : stops) {
-            if (stop != null) {
-                result.add(stop);
-            }
-        }
-        return result;
+        return Arrays.asList(getStops());
     }
 }
\ No newline at end of file
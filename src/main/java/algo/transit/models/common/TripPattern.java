@@ -0,0 +1,173 @@
+package algo.transit.models.common;
+
+import algo.transit.utils.PackedInts;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static algo.transit.utils.TimeUtils.SECONDS_PER_DAY;
+import static algo.transit.utils.TimeUtils.timeOfSeconds;
+
+/**
+ * Trips of one route that visit the same stops in the same order, differing only in their times.
+ * The stop sequence is stored once. Times are GTFS seconds (which may exceed 24:00:00), encoded as a departure
+ * per trip plus an offset profile from that departure; trips running to the same schedule share one profile,
+ * and departures, profile ids and offsets are bit-packed, so any time still decodes in constant time.
+ * Trips are sorted by departure and never overtake each other,
+ * so the first trip leaving a position after some time is also the first to reach every later stop.
+ */
+public final class TripPattern {
+    @Getter
+    private final Route route;
+    // Shared with other patterns of the same sequence that had to be split to keep trips from overtaking
+    @Getter
+    private final Stop[] stops;
+    @Getter
+    private final int[] stopIndexes;
+    @Getter
+    private final Trip[] trips;
+    // TType bit of the route
+    @Getter
+    private final int modeMask;
+    // Number of service days past the first one that any time of this pattern reaches into
+    @Getter
+    private final int overflowDays;
+
+    private final PackedInts departures;
+    private final PackedInts tripProfiles;
+    // Profile p holds the offset of position i at p * length + i
+    private final PackedInts offsets;
+    private final int profileCount;
+
+    /**
+     * Encodes the times, given as one array of GTFS seconds per trip, and attaches every trip to this pattern
+     */
+    public TripPattern(
+            Route route,
+            Stop @NotNull [] stops,
+            int @NotNull [] stopIndexes,
+            Trip @NotNull [] trips,
+            int @NotNull [][] times
+    ) {
+        this(route, stops, stopIndexes, trips, times, true);
+    }
+
+    /**
+     * Realtime versions of a pattern are built with attach = false, so trips keep pointing at their scheduled pattern
+     */
+    public TripPattern(
+            Route route,
+            Stop @NotNull [] stops,
+            int @NotNull [] stopIndexes,
+            Trip @NotNull [] trips,
+            int @NotNull [][] times,
+            boolean attach
+    ) {
+        this.route = route;
+        this.stops = stops;
+        this.stopIndexes = stopIndexes;
+        this.trips = trips;
+        this.modeMask = route == null ? 0 : route.getType().bit();
+
+        int[] tripDepartures = new int[trips.length];
+        int[] profileIds = new int[trips.length];
+        Map<Profile, Integer> profiles = new LinkedHashMap<>();
+        int latest = 0;
+        for (int t = 0; t < trips.length; t++) {
+            tripDepartures[t] = times[t][0];
+            int[] profile = new int[stops.length];
+            for (int i = 0; i < stops.length; i++) profile[i] = times[t][i] - times[t][0];
+            profileIds[t] = profiles.computeIfAbsent(new Profile(profile), _ -> profiles.size());
+            latest = Math.max(latest, times[t][stops.length - 1]);
+        }
+
+        int[] packedProfiles = new int[profiles.size() * stops.length];
+        int p = 0;
+        for (Profile profile : profiles.keySet()) {
+            System.arraycopy(profile.offsets(), 0, packedProfiles, p++ * stops.length, stops.length);
+        }
+
+        this.departures = PackedInts.of(tripDepartures);
+        this.tripProfiles = PackedInts.of(profileIds);
+        this.offsets = PackedInts.of(packedProfiles);
+        this.profileCount = profiles.size();
+        this.overflowDays = Math.max(0, latest / SECONDS_PER_DAY);
+
+        if (attach) {
+            for (int t = 0; t < trips.length; t++) trips[t].setPattern(this, t);
+        }
+    }
+
+    public int size() {
+        return trips.length;
+    }
+
+    public int length() {
+        return stops.length;
+    }
+
+    /**
+     * Distinct offset profiles; 1 when every trip runs to the same schedule
+     */
+    public int getProfileCount() {
+        return profileCount;
+    }
+
+    public int time(int trip, int position) {
+        return departures.get(trip) + offsets.get(tripProfiles.get(trip) * stops.length + position);
+    }
+
+    public @NotNull LocalTime timeOfDay(int trip, int position) {
+        return timeOfSeconds(time(trip, position));
+    }
+
+    /**
+     * Row of the first trip leaving the position at or after the given GTFS seconds, or {@link #size()} if none does
+     */
+    public int firstDeparture(int position, int seconds) {
+        int low = 0;
+        int high = trips.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (time(middle, position) < seconds) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Fewest whole minutes any trip takes from the position to the next one. Minutes of consecutive hops add up to
+     * no more than the clock minutes between their ends, so sums of these bound any ride along the pattern from below.
+     */
+    public int minimumHopMinutes(int position) {
+        int minimum = Integer.MAX_VALUE;
+        for (int p = 0; p < profileCount; p++) {
+            int hop = offsets.get(p * stops.length + position + 1) - offsets.get(p * stops.length + position);
+            minimum = Math.min(minimum, Math.floorDiv(hop, 60));
+        }
+        return Math.max(0, minimum);
+    }
+
+    /**
+     * Approximate heap footprint of the encoded times
+     */
+    public long timesSizeInBytes() {
+        return departures.sizeInBytes() + tripProfiles.sizeInBytes() + offsets.sizeInBytes();
+    }
+
+    private record Profile(int[] offsets) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Profile profile && Arrays.equals(profile.offsets, offsets);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(offsets);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package algo.transit.models.common;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Realtime state of one trip relative to its schedule. The delay shifts every stop of the trip;
+ * an update with no delay that is not cancelled puts the trip back on schedule.
+ */
+public record TripUpdate(
+        String tripId,
+        int delaySeconds,
+        boolean cancelled
+) {
+    @Contract("_, _ -> new")
+    public static @NotNull TripUpdate delay(
+            String tripId,
+            int delaySeconds
+    ) {
+        return new TripUpdate(tripId, delaySeconds, false);
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull TripUpdate cancel(String tripId) {
+        return new TripUpdate(tripId, 0, true);
+    }
+
+    public boolean isOnSchedule() {
+        return delaySeconds == 0 && !cancelled;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package algo.transit.models.loader;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The four required GTFS files of one transport agency; the optional calendars sit next to its trips
+ */
+public record AgencyFeed(
+        String name,
+        Path routes,
+        Path stops,
+        Path trips,
+        Path stopTimes
+) {
+    public static @NotNull AgencyFeed inDirectory(@NotNull Path directory) {
+        return new AgencyFeed(
+                directory.getFileName().toString(),
+                directory.resolve("routes.csv"),
+                directory.resolve("stops.csv"),
+                directory.resolve("trips.csv"),
+                directory.resolve("stop_times.csv")
+        );
+    }
+
+    /**
+     * Every subdirectory of the root that holds the four required files, sorted by name
+     */
+    public static @NotNull List<AgencyFeed> discover(@NotNull Path root) {
+        try (Stream<Path> children = Files.list(root)) {
+            return children
+                    .filter(Files::isDirectory)
+                    .map(AgencyFeed::inDirectory)
+                    .filter(feed -> Stream.of(feed.routes, feed.stops, feed.trips, feed.stopTimes).allMatch(Files::isRegularFile))
+                    .sorted(Comparator.comparing(AgencyFeed::name))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list agencies under " + root, e);
+        }
+    }
+
+    public @NotNull Path calendar() {
+        return trips.resolveSibling("calendar.csv");
+    }
+
+    public @NotNull Path calendarDates() {
+        return trips.resolveSibling("calendar_dates.csv");
+    }
+
+    /**
+     * Every file the agency is loaded from, whether or not the optional ones exist
+     */
+    public @NotNull List<Path> files() {
+        return List.of(routes, stops, trips, stopTimes, calendar(), calendarDates());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package algo.transit.models.loader;
+
+import algo.transit.models.common.Stop;
+
+/**
+ * Loads an agency's timetable on first use. Implementations must be safe to call from several searches at once.
+ */
+public interface AgencyLoader {
+    // Used by fully loaded networks, where every agency is already available
+    AgencyLoader NONE = new AgencyLoader() {
+        @Override
+        public void ensureLoaded(Stop stop) {
+        }
+
+        @Override
+        public void preload(double minLat, double minLon, double maxLat, double maxLon) {
+        }
+    };
+
+    /**
+     * Makes sure the trips of the agency owning this stop are linked before the caller reads them
+     */
+    void ensureLoaded(Stop stop);
+
+    /**
+     * Loads every agency that has stops inside the given bounding box
+     */
+    void preload(double minLat, double minLon, double maxLat, double maxLon);
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package algo.transit.models.loader;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Size and modification time of every file of an agency's feed. Two fingerprints differ as soon as
+ * any file is rewritten, added or removed, which is enough to decide whether the agency must be reloaded.
+ */
+public record FeedFingerprint(List<FileStamp> files) {
+    public static @NotNull FeedFingerprint of(@NotNull AgencyFeed feed) {
+        List<FileStamp> stamps = new ArrayList<>();
+        for (Path file : feed.files()) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                stamps.add(new FileStamp(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+            } catch (IOException e) {
+                // Missing optional files are part of the fingerprint too
+                stamps.add(new FileStamp(file, -1, -1));
+            }
+        }
+        return new FeedFingerprint(List.copyOf(stamps));
+    }
+
+    public record FileStamp(
+            Path path,
+            long size,
+            long modifiedMillis
+    ) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package algo.transit.models.loader;
+
+import algo.transit.events.LoadPhaseEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread-safe record of when each loading phase ran, per agency, relative to the creation of the timeline
+ */
+public class LoadTimeline {
+    // Agency label for phases that cover every agency at once
+    public static final String ALL_AGENCIES = "*";
+
+    private final long origin = System.nanoTime();
+    private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+
+    public @NotNull Phase begin(String phase) {
+        return begin(ALL_AGENCIES, phase);
+    }
+
+    /**
+     * Starts timing a phase; it is recorded, and emitted as a JFR event while recording, when {@link Phase#end()} is called
+     */
+    public @NotNull Phase begin(
+            String agency,
+            String phase
+    ) {
+        return new Phase(agency, phase);
+    }
+
+    private void record(
+            String agency,
+            String phase,
+            long startNanos
+    ) {
+        long end = System.nanoTime();
+        spans.add(new Span(agency, phase, (startNanos - origin) / 1_000_000, (end - origin) / 1_000_000));
+    }
+
+    public @NotNull List<Span> getSpans() {
+        List<Span> result = new ArrayList<>(spans);
+        result.sort(Comparator.comparingLong(Span::startMillis).thenComparing(Span::agency).thenComparing(Span::phase));
+        return result;
+    }
+
+    /**
+     * Chain of spans that bounded the total loading time, in execution order.
+     * Starting from the span that ended last, each step goes to the latest span that had finished before it started,
+     * which is the dependency it was waiting on.
+     */
+    public @NotNull List<Span> getCriticalPath() {
+        List<Span> all = getSpans();
+        List<Span> path = new ArrayList<>();
+
+        Span current = all.stream().max(Comparator.comparingLong(Span::endMillis)).orElse(null);
+        while (current != null) {
+            path.addFirst(current);
+            long start = current.startMillis();
+            current = all.stream()
+                    .filter(span -> span.endMillis() <= start && !path.contains(span))
+                    .max(Comparator.comparingLong(Span::endMillis))
+                    .orElse(null);
+        }
+        return path;
+    }
+
+    public @NotNull String format() {
+        StringBuilder builder = new StringBuilder("Load phases:");
+        for (Span span : getSpans()) {
+            builder.append(String.format("%n  %-8s %-12s %6d ms  (%d -> %d ms)",
+                    span.agency(), span.phase(), span.durationMillis(), span.startMillis(), span.endMillis()));
+        }
+
+        builder.append("\nCritical path:");
+        for (Span span : getCriticalPath()) {
+            builder.append(" ").append(span.agency()).append('/').append(span.phase()).append(" (").append(span.durationMillis()).append(" ms)");
+        }
+        return builder.toString();
+    }
+
+    public class Phase {
+        private final String agency;
+        private final String phase;
+        private final long startNanos = System.nanoTime();
+        private final LoadPhaseEvent event = new LoadPhaseEvent();
+
+        private Phase(
+                String agency,
+                String phase
+        ) {
+            this.agency = agency;
+            this.phase = phase;
+            event.begin();
+        }
+
+        /**
+         * May be called from another thread than the one that began the phase
+         */
+        public void end() {
+            record(agency, phase, startNanos);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.agency = agency;
+                event.phase = phase;
+                event.commit();
+            }
+        }
+    }
+
+    public record Span(
+            String agency,
+            String phase,
+            long startMillis,
+            long endMillis
+    ) {
+        public long durationMillis() {
+            return endMillis - startMillis;
+        }
+    }
+}
\ No newline at end of file
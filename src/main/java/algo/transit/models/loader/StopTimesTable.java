@@ -0,0 +1,60 @@
+package algo.transit.models.loader;
+
+import java.util.Arrays;
+
+/**
+ * Column-oriented stop_times rows. Trips and stops are referenced by their index in the loader's key lists,
+ * departure times are seconds after midnight as written in the feed (so they may exceed 24h).
+ */
+public class StopTimesTable {
+    private int[] trips;
+    private int[] stops;
+    private int[] sequences;
+    private int[] departures;
+    private int size = 0;
+
+    public StopTimesTable(int expectedRows) {
+        int capacity = Math.max(16, expectedRows);
+        this.trips = new int[capacity];
+        this.stops = new int[capacity];
+        this.sequences = new int[capacity];
+        this.departures = new int[capacity];
+    }
+
+    public void add(int trip, int stop, int sequence, int departure) {
+        if (size == trips.length) grow();
+        trips[size] = trip;
+        stops[size] = stop;
+        sequences[size] = sequence;
+        departures[size] = departure;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int trip(int row) {
+        return trips[row];
+    }
+
+    public int stop(int row) {
+        return stops[row];
+    }
+
+    public int sequence(int row) {
+        return sequences[row];
+    }
+
+    public int departure(int row) {
+        return departures[row];
+    }
+
+    private void grow() {
+        int capacity = trips.length + (trips.length >> 1);
+        trips = Arrays.copyOf(trips, capacity);
+        stops = Arrays.copyOf(stops, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+        departures = Arrays.copyOf(departures, capacity);
+    }
+}
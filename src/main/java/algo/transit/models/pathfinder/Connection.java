@@ -1,25 +1,29 @@
 package algo.transit.models.pathfinder;
 
+import algo.transit.enums.TType;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import java.time.LocalTime;
 
+/**
+ * Candidate edge of a search. Stops are referenced by their dense index, see {@link algo.transit.models.common.Stop#getIndex()}.
+ */
 public record Connection(
-        String fromStop,
-        String toStop,
+        int fromStop,
+        int toStop,
         String tripId,
         String routeId,
         String routeName,
         LocalTime departureTime,
         LocalTime arrivalTime,
-        String mode
+        TType mode
 ) {
 
     @Contract("_, _, _, _ -> new")
     public static @NotNull Connection createWalkingConnection(
-            String fromStop,
-            String toStop,
+            int fromStop,
+            int toStop,
             LocalTime currentTime,
             int walkTimeMinutes
     ) {
@@ -33,7 +37,7 @@ public record Connection(
                     "transfer",
                     currentTime,
                     currentTime,
-                    "FOOT"
+                    TType.FOOT
             );
         }
 
@@ -49,7 +53,7 @@ public record Connection(
                 "",
                 currentTime,
                 arrivalTime,
-                "FOOT"
+                TType.FOOT
         );
     }
 }
\ No newline at end of file
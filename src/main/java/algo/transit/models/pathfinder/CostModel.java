@@ -0,0 +1,48 @@
+package algo.transit.models.pathfinder;
+
+import algo.transit.enums.TType;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Cost of the connections of one search, built from its preferences before the search starts
+ * so that evaluating a connection does no string comparisons or map lookups.
+ * Implementations must be immutable; pathfinders take custom ones through
+ * {@link algo.transit.pathfinders.AbstractPathfinder#setCostModelFactory}.
+ */
+public interface CostModel {
+    /**
+     * Cost of waiting for and then riding or walking a connection of the mode, before any mode switch penalty.
+     * Must never decrease with the waiting minutes: pathfinders skip later trips of a pattern that ride no faster.
+     */
+    double travelCost(
+            @NotNull TType mode,
+            long waitingMinutes,
+            long transitMinutes
+    );
+
+    /**
+     * Added to the cost of a connection that switches from one mode to another
+     */
+    double switchPenalty(
+            @NotNull TType fromMode,
+            @NotNull TType toMode
+    );
+
+    /**
+     * Cost that every minute spent riding or walking adds at least, whatever the mode, waiting time or switch.
+     * Searches turn lower bounds on the remaining minutes into lower bounds on the remaining cost with it;
+     * the default of 0 is always safe but makes those bounds useless.
+     */
+    default double minimumCostPerMinute() {
+        return 0.0;
+    }
+
+    /**
+     * The cost model of the optimization goal and mode weights of the preferences
+     */
+    @Contract("_ -> new")
+    static @NotNull CostModel compile(@NotNull TPreference preferences) {
+        return PreferenceCostModel.of(preferences);
+    }
+}
\ No newline at end of file
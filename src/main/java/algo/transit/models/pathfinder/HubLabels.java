@@ -0,0 +1,173 @@
+package algo.transit.models.pathfinder;
+
+import algo.transit.models.common.Stop;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Exact shortest times on the time-independent stop graph, whose edges are the fastest ride between consecutive stops
+ * of every pattern and every walk within the walking limits the labels were built for.
+ * No journey is faster at any time of day, so searches use these times as lower bounds, in microseconds per lookup.
+ * Each stop has an out label of (hub, minutes from the stop) and an in label of (hub, minutes to the stop), sorted by hub;
+ * the bound between two stops is the best sum over the hubs their labels share.
+ * Built and persisted by {@link algo.transit.services.HubLabelService}.
+ */
+public final class HubLabels {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final long signature;
+    private final double walkingSpeed;
+    private final double maxWalkingTime;
+    // Indexed by stop index; null for stops the labels were not built with
+    private final int[][] outHubs;
+    private final int[][] outMinutes;
+    private final int[][] inHubs;
+    private final int[][] inMinutes;
+
+    public HubLabels(
+            long signature,
+            double walkingSpeed,
+            double maxWalkingTime,
+            int @NotNull [][] outHubs,
+            int @NotNull [][] outMinutes,
+            int @NotNull [][] inHubs,
+            int @NotNull [][] inMinutes
+    ) {
+        this.signature = signature;
+        this.walkingSpeed = walkingSpeed;
+        this.maxWalkingTime = maxWalkingTime;
+        this.outHubs = outHubs;
+        this.outMinutes = outMinutes;
+        this.inHubs = inHubs;
+        this.inMinutes = inMinutes;
+    }
+
+    /**
+     * Fewest minutes any journey takes between the stops, {@link #UNREACHABLE} if none connects them,
+     * or 0 when either stop is unknown to the labels
+     */
+    public int lowerBound(
+            int fromStop,
+            int toStop
+    ) {
+        if (fromStop == toStop || !knows(fromStop) || !knows(toStop)) return 0;
+
+        int[] fromHubs = outHubs[fromStop];
+        int[] fromMinutes = outMinutes[fromStop];
+        int[] toHubs = inHubs[toStop];
+        int[] toMinutes = inMinutes[toStop];
+        long best = UNREACHABLE;
+        int i = 0;
+        int j = 0;
+        while (i < fromHubs.length && j < toHubs.length) {
+            if (fromHubs[i] < toHubs[j]) {
+                i++;
+            } else if (fromHubs[i] > toHubs[j]) {
+                j++;
+            } else {
+                best = Math.min(best, (long) fromMinutes[i++] + toMinutes[j++]);
+            }
+        }
+        return (int) best;
+    }
+
+    public int lowerBound(
+            @NotNull Stop fromStop,
+            @NotNull Stop toStop
+    ) {
+        return lowerBound(fromStop.getIndex(), toStop.getIndex());
+    }
+
+    /**
+     * Bounds from every stop to one target, for a single search
+     */
+    public @NotNull TargetBounds boundsTo(@NotNull Stop target) {
+        return new TargetBounds(target.getIndex());
+    }
+
+    /**
+     * Whether the bounds hold for searches with these preferences: walking no faster or further than the labels allow
+     */
+    public boolean covers(@NotNull TPreference preferences) {
+        return preferences.getWalkingSpeed() <= walkingSpeed && preferences.getMaxWalkingTime() <= maxWalkingTime;
+    }
+
+    public boolean knows(int stop) {
+        return stop >= 0 && stop < outHubs.length && outHubs[stop] != null;
+    }
+
+    /**
+     * Identifies the feeds the labels were built from
+     */
+    public long getSignature() {
+        return signature;
+    }
+
+    public double getWalkingSpeed() {
+        return walkingSpeed;
+    }
+
+    public double getMaxWalkingTime() {
+        return maxWalkingTime;
+    }
+
+    /**
+     * Number of stops the labels are indexed over, known or not
+     */
+    public int size() {
+        return outHubs.length;
+    }
+
+    public int[] outHubs(int stop) {
+        return outHubs[stop];
+    }
+
+    public int[] outMinutes(int stop) {
+        return outMinutes[stop];
+    }
+
+    public int[] inHubs(int stop) {
+        return inHubs[stop];
+    }
+
+    public int[] inMinutes(int stop) {
+        return inMinutes[stop];
+    }
+
+    /**
+     * Average number of hubs per label, the cost of one lookup
+     */
+    public double averageLabelSize() {
+        long entries = 0;
+        int labels = 0;
+        for (int stop = 0; stop < outHubs.length; stop++) {
+            if (!knows(stop)) continue;
+            entries += outHubs[stop].length + inHubs[stop].length;
+            labels += 2;
+        }
+        return labels == 0 ? 0 : (double) entries / labels;
+    }
+
+    /**
+     * Looks each stop up once: searches reach the same stops many times, and a lookup costs about a microsecond
+     */
+    public final class TargetBounds {
+        private static final int UNKNOWN = -1;
+
+        private final int target;
+        private final int[] minutes;
+
+        private TargetBounds(int target) {
+            this.target = target;
+            this.minutes = new int[outHubs.length];
+            Arrays.fill(minutes, UNKNOWN);
+        }
+
+        public int from(int stop) {
+            if (stop < 0 || stop >= minutes.length) return lowerBound(stop, target);
+            if (minutes[stop] == UNKNOWN) minutes[stop] = lowerBound(stop, target);
+            return minutes[stop];
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package algo.transit.models.pathfinder;
+
+import java.util.List;
+
+/**
+ * One Pareto-optimal journey together with the criteria it was selected on
+ */
+public record Journey(
+        List<Transition> path,
+        int travelMinutes,
+        int transfers,
+        int walkingMeters
+) {
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package algo.transit.models.pathfinder;
+
+import algo.transit.enums.TType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Mode preferences of one search in array form: a mask of forbidden modes and a weight per {@link TType#ordinal()}.
+ * Filtering a stop or pattern is then one AND, and weighting a connection one array read.
+ * Built from the preferences when a search starts, so later changes to them do not affect it.
+ */
+public final class ModeTable {
+    private final int forbidden;
+    // NaN where the preferences set no weight
+    private final double[] weights;
+
+    private ModeTable(
+            int forbidden,
+            double @NotNull [] weights
+    ) {
+        this.forbidden = forbidden;
+        this.weights = weights;
+    }
+
+    public static @NotNull ModeTable of(@NotNull TPreference preferences) {
+        double[] weights = new double[TType.count()];
+        Arrays.fill(weights, Double.NaN);
+        if (preferences.getModeWeights() != null) {
+            for (Map.Entry<TType, Double> entry : preferences.getModeWeights().entrySet()) {
+                if (entry.getValue() != null) weights[entry.getKey().ordinal()] = entry.getValue();
+            }
+        }
+        return new ModeTable(TType.mask(preferences.getForbiddenModes()), weights);
+    }
+
+    public boolean isForbidden(@NotNull TType mode) {
+        return (forbidden & mode.bit()) != 0;
+    }
+
+    /**
+     * Whether any mode of the mask may be used, e.g. any mode serving a stop
+     */
+    public boolean allowsAny(int modeMask) {
+        return (modeMask & ~forbidden) != 0;
+    }
+
+    /**
+     * Weight set for the mode, or NaN when the preferences leave it unweighted
+     */
+    public double weight(@NotNull TType mode) {
+        return weights[mode.ordinal()];
+    }
+}
\ No newline at end of file
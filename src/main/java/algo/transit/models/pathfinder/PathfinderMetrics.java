@@ -0,0 +1,60 @@
+package algo.transit.models.pathfinder;
+
+import algo.transit.utils.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals and latency percentiles over every query a pathfinder answered. Safe to update from concurrent searches.
+ */
+public class PathfinderMetrics {
+    private final LatencyHistogram latencyMicros = new LatencyHistogram();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder found = new LongAdder();
+    private final LongAdder settledLabels = new LongAdder();
+    private final LongAdder relaxedEdges = new LongAdder();
+    private final LongAdder walkingLookups = new LongAdder();
+    private final LongAdder spatialNodesVisited = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    public void record(@NotNull QueryStats stats) {
+        latencyMicros.record(stats.getLatencyNanos() / 1000);
+        queries.increment();
+        if (stats.isFound()) found.increment();
+        settledLabels.add(stats.getSettledLabels());
+        relaxedEdges.add(stats.getRelaxedEdges());
+        walkingLookups.add(stats.getWalkingLookups());
+        spatialNodesVisited.add(stats.getSpatialNodesVisited());
+        if (stats.getAllocatedBytes() > 0) allocatedBytes.add(stats.getAllocatedBytes());
+    }
+
+    public LatencyHistogram getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public String format() {
+        return String.format(Locale.ROOT,
+                "Queries: %d (%d found), latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms, %d settled labels, %d relaxed edges",
+                queries.sum(), found.sum(), millisAt(50), millisAt(90), millisAt(99), latencyMicros.getMax() / 1000.0,
+                settledLabels.sum(), relaxedEdges.sum());
+    }
+
+    public String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"queries\": %d, \"found\": %d, \"latencyMillis\": {\"mean\": %.3f, \"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f, \"p999\": %.3f, \"max\": %.3f}, " +
+                        "\"settledLabels\": %d, \"relaxedEdges\": %d, \"walkingLookups\": %d, \"spatialNodesVisited\": %d, \"allocatedBytes\": %d}",
+                queries.sum(), found.sum(), latencyMicros.getMean() / 1000.0, millisAt(50), millisAt(90), millisAt(99), millisAt(99.9),
+                latencyMicros.getMax() / 1000.0, settledLabels.sum(), relaxedEdges.sum(), walkingLookups.sum(),
+                spatialNodesVisited.sum(), allocatedBytes.sum());
+    }
+
+    private double millisAt(double percentile) {
+        return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
\ No newline at end of file
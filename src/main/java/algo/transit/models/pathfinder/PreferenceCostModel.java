@@ -0,0 +1,112 @@
+package algo.transit.models.pathfinder;
+
+import algo.transit.enums.TType;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Default cost model. The optimization goal and mode weights reduce to one waiting and one transit factor per mode,
+ * and the switch penalties to a table indexed by the ordinals of both modes.
+ */
+final class PreferenceCostModel implements CostModel {
+    private final double[] waitingFactors;
+    private final double[] transitFactors;
+    private final double[][] switchPenalties;
+    private final double minimumCostPerMinute;
+
+    private PreferenceCostModel(
+            double @NotNull [] waitingFactors,
+            double @NotNull [] transitFactors,
+            double @NotNull [][] switchPenalties
+    ) {
+        this.waitingFactors = waitingFactors;
+        this.transitFactors = transitFactors;
+        this.switchPenalties = switchPenalties;
+
+        // Waiting factors and switch penalties are never negative, so the cheapest transit factor bounds every minute
+        double minimum = Double.POSITIVE_INFINITY;
+        for (double transitFactor : transitFactors) minimum = Math.min(minimum, transitFactor);
+        this.minimumCostPerMinute = Math.max(0.0, minimum);
+    }
+
+    @Contract("_ -> new")
+    static @NotNull PreferenceCostModel of(@NotNull TPreference preferences) {
+        String goal = preferences.getOptimizationGoal();
+        boolean transfers = "transfers".equalsIgnoreCase(goal);
+        boolean walking = "walking".equalsIgnoreCase(goal);
+        ModeTable modes = ModeTable.of(preferences);
+
+        int count = TType.count();
+        double[] waitingFactors = new double[count];
+        double[] transitFactors = new double[count];
+        for (TType mode : TType.values()) {
+            double waitingFactor;
+            double transitFactor;
+            if (transfers) {
+                // Heavily penalize mode changes to minimize transfers
+                waitingFactor = 0.01;
+                transitFactor = 0.1;
+            } else if (walking && mode == TType.FOOT) {
+                // Heavy penalty for walking
+                waitingFactor = 0.0;
+                transitFactor = 5.0;
+            } else {
+                // Half penalty for waiting
+                waitingFactor = 0.5;
+                transitFactor = 1.0;
+            }
+
+            // Mode weights only apply to the transit time, not the waiting time
+            double weight = modes.weight(mode);
+            if (!Double.isNaN(weight)) {
+                // For transfer optimization, still preserve some weight difference
+                waitingFactor = transfers ? 0.1 : 0.5;
+                transitFactor = transfers ? Math.min(1.5, weight) : weight;
+            }
+
+            waitingFactors[mode.ordinal()] = waitingFactor;
+            transitFactors[mode.ordinal()] = transitFactor;
+        }
+
+        double[][] switchPenalties = new double[count][count];
+        for (TType fromMode : TType.values()) {
+            for (TType toMode : TType.values()) {
+                switchPenalties[fromMode.ordinal()][toMode.ordinal()] = transfers ? 500.0 : defaultPenalty(fromMode, toMode);
+            }
+        }
+        return new PreferenceCostModel(waitingFactors, transitFactors, switchPenalties);
+    }
+
+    private static double defaultPenalty(
+            @NotNull TType fromMode,
+            @NotNull TType toMode
+    ) {
+        if (fromMode == TType.TRAIN && toMode == TType.BUS) return 8.0;
+        if (fromMode == TType.BUS && toMode == TType.BUS) return 4.0;
+        if (fromMode == TType.TRAM && toMode == TType.TRAM) return 3.0;
+        if (fromMode == TType.FOOT || toMode == TType.FOOT) return 2.0;
+        return 5.0;
+    }
+
+    @Override
+    public double travelCost(
+            @NotNull TType mode,
+            long waitingMinutes,
+            long transitMinutes
+    ) {
+        return waitingMinutes * waitingFactors[mode.ordinal()] + transitMinutes * transitFactors[mode.ordinal()];
+    }
+
+    @Override
+    public double minimumCostPerMinute() {
+        return minimumCostPerMinute;
+    }
+
+    @Override
+    public double switchPenalty(
+            @NotNull TType fromMode,
+            @NotNull TType toMode
+    ) {
+        return switchPenalties[fromMode.ordinal()][toMode.ordinal()];
+    }
+}
\ No newline at end of file
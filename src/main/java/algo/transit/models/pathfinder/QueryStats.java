@@ -0,0 +1,107 @@
+package algo.transit.models.pathfinder;
+
+import algo.transit.events.QueryEvent;
+import algo.transit.utils.Allocations;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Locale;
+
+/**
+ * Work done by a single search. Owned by the searching thread, so the counters are plain fields.
+ */
+@Getter
+public class QueryStats {
+    private final long startNanos = System.nanoTime();
+    private final long startAllocatedBytes = Allocations.currentThreadBytes();
+
+    // Includes the labels of a bidirectional query's backward search, also counted apart below
+    private long settledLabels;
+    private long backwardSettledLabels;
+    private long relaxedEdges;
+    private int queuePeak;
+    private long walkingLookups;
+    private long spatialNodesVisited;
+    private long latencyNanos;
+    private long allocatedBytes = -1;
+    private boolean found;
+
+    @Getter(AccessLevel.NONE)
+    private final QueryEvent event = new QueryEvent();
+
+    /**
+     * Starts the clock for a search; destination is null for one-to-all searches
+     */
+    public QueryStats(
+            String algorithm,
+            String origin,
+            String destination
+    ) {
+        event.algorithm = algorithm;
+        event.origin = origin;
+        event.destination = destination;
+        event.begin();
+    }
+
+    public void settled() {
+        settledLabels++;
+    }
+
+    /**
+     * A label settled by the backward search that bounds a bidirectional query
+     */
+    public void settledBackward() {
+        settledLabels++;
+        backwardSettledLabels++;
+    }
+
+    public void relaxed() {
+        relaxedEdges++;
+    }
+
+    public void queueSize(int size) {
+        if (size > queuePeak) queuePeak = size;
+    }
+
+    public void walkingLookup() {
+        walkingLookups++;
+    }
+
+    public void spatialNodeVisited() {
+        spatialNodesVisited++;
+    }
+
+    /**
+     * Stops the clock and the allocation counter, and emits the query's JFR event while recording.
+     * Must be called on the thread that ran the search.
+     */
+    public void finish(boolean found) {
+        this.latencyNanos = System.nanoTime() - startNanos;
+        long allocated = Allocations.currentThreadBytes();
+        this.allocatedBytes = allocated < 0 || startAllocatedBytes < 0 ? -1 : allocated - startAllocatedBytes;
+        this.found = found;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.found = found;
+            event.settledLabels = settledLabels;
+            event.relaxedEdges = relaxedEdges;
+            event.queuePeak = queuePeak;
+            event.commit();
+        }
+    }
+
+    public String format() {
+        return String.format(Locale.ROOT,
+                "Search: %.2f ms, %d settled labels (%d backward), %d relaxed edges, queue peak %d, %d walking lookups, %d spatial nodes visited, %s allocated",
+                latencyNanos / 1e6, settledLabels, backwardSettledLabels, relaxedEdges, queuePeak, walkingLookups, spatialNodesVisited,
+                allocatedBytes < 0 ? "unknown bytes" : (allocatedBytes / 1024) + " KB");
+    }
+
+    public String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"latencyNanos\": %d, \"found\": %b, \"settledLabels\": %d, \"backwardSettledLabels\": %d, \"relaxedEdges\": %d, \"queuePeak\": %d, " +
+                        "\"walkingLookups\": %d, \"spatialNodesVisited\": %d, \"allocatedBytes\": %d}",
+                latencyNanos, found, settledLabels, backwardSettledLabels, relaxedEdges, queuePeak, walkingLookups, spatialNodesVisited, allocatedBytes);
+    }
+}
\ No newline at end of file
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -17,4 +18,6 @@ public class TPreference {
     private Map<TType, Double> modeWeights;
     private List<TType> forbiddenModes;
     private String optimizationGoal;
+    // Trips are filtered by their GTFS calendar for this date; null runs every trip every day
+    private LocalDate serviceDate;
 }
\ No newline at end of file
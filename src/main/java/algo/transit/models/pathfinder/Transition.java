@@ -1,5 +1,6 @@
 package algo.transit.models.pathfinder;
 
+import algo.transit.enums.TType;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
@@ -8,16 +9,18 @@ import java.time.LocalTime;
 public record Transition(
         String fromStop,
         String toStop,
-        String mode,
+        TType mode,
         String route,
         LocalTime departure,
         LocalTime arrival,
         int dayOffset,
         double cost
 ) {
-    @Contract(value = "_, _, _ -> new", pure = true)
+    @Contract(value = "_, _, _, _, _ -> new", pure = true)
     public static @NotNull Transition fromConnection(
             @NotNull Connection connection,
+            String fromStopId,
+            String toStopId,
             double cost,
             int currentDayOffset
     ) {
@@ -26,8 +29,8 @@ public record Transition(
         if (connection.arrivalTime().isBefore(connection.departureTime())) newDayOffset++;
 
         return new Transition(
-                connection.fromStop(),
-                connection.toStop(),
+                fromStopId,
+                toStopId,
                 connection.mode(),
                 connection.routeName(),
                 connection.departureTime(),
@@ -0,0 +1,34 @@
+package algo.transit.models.pathfinder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dense origin × destination travel-time matrix, stored row-major in minutes.
+ */
+public record TravelTimeMatrix(
+        List<String> origins,
+        List<String> destinations,
+        int[] minutes
+) {
+    public static final int UNREACHABLE = -1;
+
+    public static @NotNull TravelTimeMatrix empty(
+            @NotNull List<String> origins,
+            @NotNull List<String> destinations
+    ) {
+        int[] minutes = new int[origins.size() * destinations.size()];
+        Arrays.fill(minutes, UNREACHABLE);
+        return new TravelTimeMatrix(List.copyOf(origins), List.copyOf(destinations), minutes);
+    }
+
+    public int get(int origin, int destination) {
+        return minutes[origin * destinations.size() + destination];
+    }
+
+    public void set(int origin, int destination, int value) {
+        minutes[origin * destinations.size() + destination] = value;
+    }
+}
\ No newline at end of file
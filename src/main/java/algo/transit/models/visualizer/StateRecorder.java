@@ -9,6 +9,9 @@ public class StateRecorder {
     public final List<String> exploredStates = new ArrayList<>();
     public List<Transition> finalPath = new ArrayList<>();
 
+    // Stops settled by the backward search of a bidirectional query
+    public int backwardStates = 0;
+
     public String startStopId;
     public String endStopId;
 
@@ -24,11 +27,29 @@ public class StateRecorder {
         exploredStates.add(stopId);
     }
 
+    public void recordBackwardState() {
+        backwardStates++;
+    }
+
     public void recordFinalPath(List<Transition> path) {
         this.finalPath = new ArrayList<>(path);
     }
 
+    /**
+     * States explored by the query, including those of the backward search of a bidirectional one
+     */
     public int getTotalSteps() {
+        return exploredStates.size() + backwardStates;
+    }
+
+    /**
+     * States explored by the forward search, the ones {@link #exploredStates} lists
+     */
+    public int getForwardSteps() {
         return exploredStates.size();
     }
+
+    public int getBackwardSteps() {
+        return backwardStates;
+    }
 }
\ No newline at end of file
@@ -1,17 +1,33 @@
 package algo.transit.pathfinders;
 
 import algo.transit.enums.TType;
+import algo.transit.events.SpatialIndexEvent;
+import algo.transit.models.common.PatternStop;
+import algo.transit.models.common.ServiceDays;
+import algo.transit.models.common.Station;
 import algo.transit.models.common.Stop;
+import algo.transit.models.common.Timetable;
+import algo.transit.models.common.TransitNetwork;
+import algo.transit.models.loader.AgencyLoader;
 import algo.transit.models.pathfinder.Connection;
+import algo.transit.models.pathfinder.CostModel;
+import algo.transit.models.pathfinder.HubLabels;
+import algo.transit.models.pathfinder.PathfinderMetrics;
+import algo.transit.models.pathfinder.QueryStats;
 import algo.transit.models.pathfinder.TPreference;
 import algo.transit.models.pathfinder.Transition;
 import algo.transit.models.visualizer.StateRecorder;
+import algo.transit.utils.Log;
 import algo.transit.utils.QuadTree;
 import org.jetbrains.annotations.NotNull;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static algo.transit.utils.TimeUtils.calculateMinutesBetween;
 
@@ -21,26 +37,235 @@ public abstract class AbstractPathfinder {
     protected static final double MIN_LATITUDE = 49.0;
     protected static final double MAX_LONGITUDE = 7.0;
     protected static final double MIN_LONGITUDE = 2.0;
+    // Longest wait isWorthConsideringTime accepts, so trip scans can stop once departures are further away
+    protected static final int MAX_WAIT_MINUTES = 12 * 60;
+    protected static final PatternStop[] NO_PATTERNS = new PatternStop[0];
 
     protected final Map<String, Stop> stops;
+    // Reverse mapping of Stop#getIndex(), so searches can keep their state in arrays
+    protected final Stop[] stopsByIndex;
     protected final QuadTree stopQuadTree;
+    // Loads timetables of lazily loaded networks as the search reaches them
+    protected AgencyLoader agencyLoader = AgencyLoader.NONE;
+    // Read once per search, so realtime updates published meanwhile do not change its view
+    protected Supplier<Timetable> timetableSource = () -> Timetable.SCHEDULED;
+    // Compiles the preferences of each search into the cost model it uses
+    protected Function<TPreference, CostModel> costModelFactory = CostModel::compile;
+    // Exact lower bounds between stops, for goal-directed pruning; null until labels are set
+    protected HubLabels hubLabels = null;
+    // Station of each stop by its index, from the network searched; no stations until set
+    protected Station[] stations = new Station[0];
 
     // Recorder for visualizing the pathfinding process
     public StateRecorder recorder;
 
+    // Aggregated over every query; per-query counters live in each search's own QueryStats
+    protected final PathfinderMetrics metrics = new PathfinderMetrics();
+    private volatile QueryStats lastQueryStats;
+
     protected AbstractPathfinder(Map<String, Stop> stops) {
         this.stops = stops;
+        this.stopsByIndex = indexStops(stops);
         this.stopQuadTree = buildQuadTree(stops);
     }
 
+    /**
+     * Lays the stops out by their dense index. Stops that were not indexed at load time are numbered after the others.
+     */
+    private static Stop @NotNull [] indexStops(@NotNull Map<String, Stop> stops) {
+        int size = 0;
+        for (Stop stop : stops.values()) size = Math.max(size, stop.getIndex() + 1);
+
+        List<Stop> unindexed = new ArrayList<>();
+        for (Stop stop : stops.values()) if (stop.getIndex() < 0) unindexed.add(stop);
+        for (Stop stop : unindexed) stop.setIndex(size++);
+
+        Stop[] byIndex = new Stop[size];
+        for (Stop stop : stops.values()) byIndex[stop.getIndex()] = stop;
+        return byIndex;
+    }
+
+    public PathfinderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Counters of the most recently finished query, or null before the first one
+     */
+    public QueryStats getLastQueryStats() {
+        return lastQueryStats;
+    }
+
+    /**
+     * Epoch day of the service day that started daysAfter days after the query date, for {@link algo.transit.models.common.Trip#runsOn}.
+     * Without a query date every trip runs, so the result stays {@link ServiceDays#ANY_DAY}.
+     */
+    protected static long serviceDay(
+            long queryDay,
+            int daysAfter
+    ) {
+        return queryDay == ServiceDays.ANY_DAY ? ServiceDays.ANY_DAY : queryDay + daysAfter;
+    }
+
+    /**
+     * Starts the counters of a search; destination is null for one-to-all searches
+     */
+    protected @NotNull QueryStats startQuery(
+            String origin,
+            String destination
+    ) {
+        return new QueryStats(getClass().getSimpleName(), origin, destination);
+    }
+
+    protected void finishQuery(
+            @NotNull QueryStats stats,
+            boolean found
+    ) {
+        stats.finish(found);
+        metrics.record(stats);
+        lastQueryStats = stats;
+    }
+
+    /**
+     * Stops within the radius of the given stop, counted as one walking lookup
+     */
+    protected List<Stop> findNearby(
+            @NotNull Stop stop,
+            double radius,
+            @NotNull QueryStats stats
+    ) {
+        stats.walkingLookup();
+        return stopQuadTree.findNearby(stop.getLatitude(), stop.getLongitude(), radius, stats);
+    }
+
+    /**
+     * Stops within the radius a walk from the given stop goes to. A station is walked to at its nearest stop only,
+     * and its own station not at all: the other stops are reached through transfers, see {@link #stationTransfers}.
+     */
+    protected List<Stop> findWalkTargets(
+            @NotNull Stop stop,
+            double radius,
+            @NotNull QueryStats stats
+    ) {
+        List<Stop> nearby = findNearby(stop, radius, stats);
+        List<Stop> targets = new ArrayList<>(nearby.size());
+        Station own = stationOf(stop);
+        Map<Station, Stop> nearest = null;
+        for (Stop nearbyStop : nearby) {
+            Station station = stationOf(nearbyStop);
+            if (station == null) {
+                targets.add(nearbyStop);
+            } else if (station != own) {
+                if (nearest == null) nearest = new LinkedHashMap<>();
+                nearest.merge(station, nearbyStop, (a, b) -> distance(stop, a) <= distance(stop, b) ? a : b);
+            }
+        }
+        if (nearest != null) targets.addAll(nearest.values());
+        return targets;
+    }
+
+    /**
+     * Stops of the stop's station, the stop included, each reached in {@link Station#transferMinutes(Stop, Stop, double)};
+     * none when the stop has no station
+     */
+    protected List<Stop> stationTransfers(@NotNull Stop stop) {
+        Station station = stationOf(stop);
+        return station == null ? List.of() : station.getStops();
+    }
+
+    /**
+     * Station of the stop in the network searched, null when it has none
+     */
+    protected Station stationOf(@NotNull Stop stop) {
+        int index = stop.getIndex();
+        return index >= 0 && index < stations.length ? stations[index] : null;
+    }
+
+    private static double distance(
+            @NotNull Stop from,
+            @NotNull Stop to
+    ) {
+        return QuadTree.calculateDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+    }
+
+    protected String stopId(int index) {
+        return stopsByIndex[index].getStopId();
+    }
+
+    /**
+     * Turns a connection into a path step, resolving its stop indexes back to IDs
+     */
+    protected @NotNull Transition toTransition(
+            @NotNull Connection connection,
+            double cost,
+            int dayOffset
+    ) {
+        return Transition.fromConnection(connection, stopId(connection.fromStop()), stopId(connection.toStop()), cost, dayOffset);
+    }
+
     protected @NotNull QuadTree buildQuadTree(@NotNull Map<String, Stop> stops) {
-        System.out.println("Building QuadTree for spatial stop indexing...");
+        Log.info("Building QuadTree for spatial stop indexing...");
+        SpatialIndexEvent event = new SpatialIndexEvent();
+        event.begin();
+
         QuadTree tree = new QuadTree(MIN_LONGITUDE, MIN_LATITUDE, MAX_LONGITUDE, MAX_LATITUDE, 0);
         for (Stop stop : stops.values()) tree.insert(stop);
-        System.out.println("QuadTree built successfully");
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.stops = stops.size();
+            event.commit();
+        }
+        Log.info("QuadTree built successfully");
         return tree;
     }
 
+    public void setAgencyLoader(@NotNull AgencyLoader agencyLoader) {
+        this.agencyLoader = agencyLoader;
+    }
+
+    /**
+     * Searches started after this call use the latest version supplied, such as {@code RealtimeService::current}
+     */
+    public void setTimetableSource(@NotNull Supplier<Timetable> timetableSource) {
+        this.timetableSource = timetableSource;
+    }
+
+    /**
+     * Lets searches prune with labels built for this network, see {@link algo.transit.services.HubLabelService}
+     */
+    public void setHubLabels(HubLabels hubLabels) {
+        this.hubLabels = hubLabels;
+    }
+
+    /**
+     * Lets searches change platforms within the stations of the network searched, see {@link TransitNetwork#getStations()}
+     */
+    public void setStations(Station @NotNull [] stations) {
+        this.stations = stations;
+    }
+
+    /**
+     * The hub labels, if set and valid for searches walking as the preferences allow; null otherwise
+     */
+    protected HubLabels hubLabelsFor(@NotNull TPreference preferences) {
+        return hubLabels != null && hubLabels.covers(preferences) ? hubLabels : null;
+    }
+
+    /**
+     * Replaces the default cost model, e.g. with one that also weighs accessibility; searches started after this call use it
+     */
+    public void setCostModelFactory(@NotNull Function<TPreference, CostModel> costModelFactory) {
+        this.costModelFactory = costModelFactory;
+    }
+
+    /**
+     * Must be called before reading a stop's trips or routes
+     */
+    protected void ensureLoaded(Stop stop) {
+        agencyLoader.ensureLoaded(stop);
+    }
+
     /**
      * Abstract method that concrete pathfinders must implement
      */
@@ -57,8 +282,21 @@ public abstract class AbstractPathfinder {
     protected double calculateTransitionCost(
             LocalTime currentTime,
             @NotNull Connection connection,
-            String lastMode,
+            TType lastMode,
             @NotNull TPreference preferences
+    ) {
+        return calculateTransitionCost(currentTime, connection, lastMode, costModelFactory.apply(preferences));
+    }
+
+    /**
+     * Same cost, from a model compiled once per search. A null last mode means the connection is the first one of the path.
+     * Returns -1 when a mode switch leaves less than the minimum transfer time.
+     */
+    protected double calculateTransitionCost(
+            LocalTime currentTime,
+            @NotNull Connection connection,
+            TType lastMode,
+            @NotNull CostModel costModel
     ) {
         long waitingMinutes = calculateMinutesBetween(
                 currentTime,
@@ -69,57 +307,19 @@ public abstract class AbstractPathfinder {
                 connection.arrivalTime(),
                 connection.arrivalTime().isBefore(connection.departureTime()) ? 1 : 0);
 
-        double cost;
-        String goal = preferences.getOptimizationGoal();
-
-        if (goal == null || goal.isEmpty() || goal.equalsIgnoreCase("time")) {
-            // Half penalty for waiting
-            cost = transitMinutes + (waitingMinutes * 0.5);
-        } else if (goal.equalsIgnoreCase("transfers")) {
-            // Heavily penalize mode changes to minimize transfers
-            cost = (transitMinutes * 0.1) + (waitingMinutes * 0.01);
-        } else if (goal.equalsIgnoreCase("walking")) {
-            // Heavily penalize walking
-            if (connection.mode().equals("FOOT")) {
-                // Heavy penalty for walking
-                cost = transitMinutes * 5.0;
-            } else {
-                cost = transitMinutes + (waitingMinutes * 0.5);
-            }
-        } else {
-            cost = transitMinutes + (waitingMinutes * 0.5);
-        }
-
-        // Apply mode-specific weights
-        TType mode = TType.fromString(connection.mode());
-        Double modeWeight = preferences.getModeWeights().get(mode);
-        if (modeWeight != null) {
-            // Only apply weight to the transit time, not the waiting time
-            if (goal != null && goal.equalsIgnoreCase("transfers")) {
-                // For transfer optimization, still preserve some weight difference
-                cost = (waitingMinutes * 0.1) + (transitMinutes * Math.min(1.5, modeWeight));
-            } else {
-                cost = (waitingMinutes * 0.5) + (transitMinutes * modeWeight);
-            }
-        }
+        double cost = costModel.travelCost(connection.mode(), waitingMinutes, transitMinutes);
 
         // When we detect a mode change, enforce minimum transfer time
-        if (!lastMode.equals("NONE") && !lastMode.equals(connection.mode())) {
+        if (lastMode != null && lastMode != connection.mode()) {
             // SPECIAL CASE FOR WALKING - skip the wait time check
-            if (connection.mode().equals("FOOT")) {
-                double penalty = calculateModeSwitchPenalty(lastMode, connection.mode(), goal);
-                cost += penalty;
-            } else {
-                // For non-walking modes, check transfer time as usual
-                Stop fromStop = stops.get(connection.fromStop());
-                Stop toStop = stops.get(connection.toStop());
+            if (connection.mode() != TType.FOOT) {
+                Stop fromStop = stopsByIndex[connection.fromStop()];
+                Stop toStop = stopsByIndex[connection.toStop()];
                 double minTransferTime = calculateTransferTime(fromStop, toStop);
 
                 if (waitingMinutes < minTransferTime) return -1.0;
-
-                double penalty = calculateModeSwitchPenalty(lastMode, connection.mode(), goal);
-                cost += penalty;
             }
+            cost += costModel.switchPenalty(lastMode, connection.mode());
         }
 
         return Math.max(0.1, cost); // Ensure positive cost
@@ -182,7 +382,7 @@ public abstract class AbstractPathfinder {
         // Case 3: Overnight case - first departure next morning
         if (currentTime.getHour() >= 20 && departureTime.getHour() <= 10) {
             // For end-of-day to morning trips, allow longer waiting times
-            return waitingMinutes <= 12 * 60;
+            return waitingMinutes <= MAX_WAIT_MINUTES;
         }
 
         // Case 4: Day transition without being overnight case
@@ -217,31 +417,4 @@ public abstract class AbstractPathfinder {
 
         return Math.min(Math.max(transferTime, 1.0), 5.0);
     }
-
-    protected double calculateModeSwitchPenalty(
-            String fromMode,
-            String toMode,
-            String optimizationGoal
-    ) {
-        double penalty = 5.0;
-
-        // Higher penalty for transfers optimization
-        if ("transfers".equalsIgnoreCase(optimizationGoal)) {
-            penalty = 500.0;
-            return penalty;
-        }
-
-        // Mode-specific adjustments
-        if (fromMode.equals("TRAIN") && toMode.equals("BUS")) {
-            penalty = 8.0;
-        } else if (fromMode.equals("BUS") && toMode.equals("BUS")) {
-            penalty = 4.0;
-        } else if (fromMode.equals("TRAM") && toMode.equals("TRAM")) {
-            penalty = 3.0;
-        } else if (fromMode.equals("FOOT") || toMode.equals("FOOT")) {
-            penalty = 2.0;
-        }
-
-        return penalty;
-    }
 }
\ No newline at end of file
@@ -1,13 +1,21 @@
 package algo.transit.pathfinders;
 
 import algo.transit.enums.TType;
+import algo.transit.models.common.PatternStop;
 import algo.transit.models.common.Route;
+import algo.transit.models.common.ServiceDays;
 import algo.transit.models.common.Stop;
-import algo.transit.models.common.Trip;
+import algo.transit.models.common.Timetable;
+import algo.transit.models.common.TripPattern;
 import algo.transit.models.pathfinder.Connection;
+import algo.transit.models.pathfinder.CostModel;
+import algo.transit.models.pathfinder.HubLabels;
+import algo.transit.models.pathfinder.ModeTable;
+import algo.transit.models.pathfinder.QueryStats;
 import algo.transit.models.pathfinder.TPreference;
 import algo.transit.models.pathfinder.Transition;
 import algo.transit.models.visualizer.StateRecorder;
+import algo.transit.utils.Log;
 import algo.transit.utils.QuadTree;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -15,36 +23,55 @@ import org.jetbrains.annotations.NotNull;
 import java.time.LocalTime;
 import java.util.*;
 
+import static algo.transit.utils.TimeUtils.SECONDS_PER_DAY;
+import static algo.transit.utils.TimeUtils.calculateMinutesBetween;
 import static algo.transit.utils.TimeUtils.isAfter;
 import static algo.transit.utils.TimeUtils.isBefore;
+import static algo.transit.utils.TimeUtils.toMinutes;
 
 public class DPathfinder extends AbstractPathfinder {
+    // How far past the origin's bound the backward search of a bidirectional query keeps going; stops beyond it
+    // share one bound, which is weaker but costs nothing, and searching further rarely pays for itself
+    private static final int BACKWARD_SLACK_MINUTES = 10;
+    // Connections go to the next few stops of a trip, not all of them
+    private static final int MAX_STOPS_PER_TRIP = 4;
+    private static final int UNREACHABLE = HubLabels.UNREACHABLE;
+
+    // Guides the forward search with lower bounds from a backward search from the target
+    private boolean bidirectional = false;
 
     public DPathfinder(Map<String, Stop> stops) {
         super(stops);
     }
 
-    @Contract("_, _, _ -> new")
-    private static @NotNull DijkstraState getDijkstraState(
+    /**
+     * In bidirectional mode each query first searches backward from the target over lower-bound travel times,
+     * then orders and prunes the forward search with the resulting bounds. Worth it on long queries,
+     * where the plain forward search explores a wide ball around the origin.
+     * Hub labels, when set, give exact bounds without the backward search and are used in either mode.
+     */
+    public void setBidirectional(boolean bidirectional) {
+        this.bidirectional = bidirectional;
+    }
+
+    @Contract("_, _, _, _ -> new")
+    private @NotNull DijkstraState getDijkstraState(
             @NotNull Connection connection,
             double transitionCost,
-            @NotNull DijkstraState current
+            @NotNull DijkstraState current,
+            double remainingCost
     ) {
         int newDayOffset = current.dayOffset;
         if (connection.arrivalTime().isBefore(connection.departureTime())) newDayOffset++;
 
-        Transition transition = Transition.fromConnection(
-                connection,
-                transitionCost,
-                current.dayOffset
-        );
+        Transition transition = toTransition(connection, transitionCost, current.dayOffset);
 
         List<Transition> newPath = new ArrayList<>(current.path);
         newPath.add(transition);
 
         // Count transfers - different mode = transfer
         int transfers = current.transfers;
-        if (!current.lastMode.equals("NONE") && !current.lastMode.equals(connection.mode())) {
+        if (current.lastMode != null && current.lastMode != connection.mode()) {
             transfers++;
         }
 
@@ -53,6 +80,7 @@ public class DPathfinder extends AbstractPathfinder {
                 connection.arrivalTime(),
                 newDayOffset,
                 current.cost + transitionCost,
+                current.cost + transitionCost + remainingCost,
                 newPath,
                 connection.mode(),
                 transfers
@@ -69,6 +97,7 @@ public class DPathfinder extends AbstractPathfinder {
             LocalTime startTime,
             TPreference preferences
     ) {
+        QueryStats stats = startQuery(startStopId, endStopId);
         recorder = new StateRecorder();
         recorder.setStartAndEndStops(startStopId, endStopId);
 
@@ -76,19 +105,36 @@ public class DPathfinder extends AbstractPathfinder {
         Stop endStop = stops.get(endStopId);
 
         if (startStop == null || endStop == null) {
-            System.err.println("Start or end stop not found");
+            Log.warn("Start or end stop not found");
+            finishQuery(stats, false);
+            return Collections.emptyList();
+        }
+
+        Timetable timetable = timetableSource.get();
+        ModeTable modes = ModeTable.of(preferences);
+        CostModel costModel = costModelFactory.apply(preferences);
+        // Lower bounds on the minutes left to the target, and what each of those minutes costs at least
+        HubLabels labels = hubLabelsFor(preferences);
+        HubLabels.TargetBounds targetBounds = labels == null ? null : labels.boundsTo(endStop);
+        int[] bounds = targetBounds == null && bidirectional ? lowerBounds(startStop, endStop, modes, preferences, stats) : null;
+        boolean bounded = targetBounds != null || bounds != null;
+        double costPerMinute = costModel.minimumCostPerMinute();
+        if (bounded && bound(targetBounds, bounds, startStop.getIndex()) == UNREACHABLE) {
+            Log.debug("Target cannot be reached from the origin");
+            finishQuery(stats, false);
             return Collections.emptyList();
         }
 
-        // Initialize Dijkstra algorithm
+        // Initialize Dijkstra algorithm; costs are indexed by stop index
         PriorityQueue<DijkstraState> priorityQueue = new PriorityQueue<>();
-        Map<String, Double> bestCosts = new HashMap<>();
+        double[] bestCosts = new double[stopsByIndex.length];
+        Arrays.fill(bestCosts, Double.POSITIVE_INFINITY);
 
         DijkstraState initialState = new DijkstraState(
-                startStopId, startTime, 0, 0.0, new ArrayList<>(), "NONE", 0
+                startStop.getIndex(), startTime, 0, 0.0, 0.0, new ArrayList<>(), null, 0
         );
         priorityQueue.add(initialState);
-        bestCosts.put(startStopId, 0.0);
+        bestCosts[startStop.getIndex()] = 0.0;
 
         int iterations = 0;
 
@@ -96,59 +142,169 @@ public class DPathfinder extends AbstractPathfinder {
             iterations++;
             DijkstraState current = priorityQueue.poll();
 
-            recorder.recordExploredState(current.stopId);
-
-            // Log progress periodically
-            if (iterations % 1000 == 0) System.out.println("Iteration: " + iterations + " " + current);
+            recorder.recordExploredState(stopId(current.stop));
 
             // If we've reached the destination, return the path
-            if (current.stopId.equals(endStopId)) {
-                System.out.println("Path found in " + iterations + " iterations");
+            if (current.stop == endStop.getIndex()) {
+                Log.debug("Path found in %d iterations", iterations);
                 recorder.recordFinalPath(current.path);
+                finishQuery(stats, true);
                 return current.path;
             }
 
             // Skip if we've found a better path to this stop
-            Double bestCost = bestCosts.get(current.stopId);
-            if (bestCost != null && bestCost < current.cost) continue;
+            if (bestCosts[current.stop] < current.cost) continue;
+            stats.settled();
 
             // Generate and process all possible transitions from current state
-            List<Connection> connections = findPossibleConnections(current, preferences, endStop);
+            List<Connection> connections = findPossibleConnections(current, timetable, modes, preferences, endStop, stats);
             for (Connection connection : connections) {
+                stats.relaxed();
                 double transitionCost = calculateTransitionCost(
                         current.time,
                         connection,
                         current.lastMode,
-                        preferences
+                        costModel
                 );
 
                 if (transitionCost < 0) continue;
 
-                DijkstraState successor = getDijkstraState(connection, transitionCost, current);
-                Double existingCost = bestCosts.get(connection.toStop());
+                double remainingCost = 0.0;
+                if (bounded) {
+                    // No sequence of hops and walks leads from there to the target
+                    int bound = bound(targetBounds, bounds, connection.toStop());
+                    if (bound == UNREACHABLE) continue;
+                    remainingCost = bound * costPerMinute;
+                }
 
+                DijkstraState successor = getDijkstraState(connection, transitionCost, current, remainingCost);
                 // If this is a better path, update and add to queue
-                if (existingCost == null || successor.cost < existingCost) {
-                    bestCosts.put(connection.toStop(), successor.cost);
+                if (successor.cost < bestCosts[connection.toStop()]) {
+                    bestCosts[connection.toStop()] = successor.cost;
                     priorityQueue.add(successor);
+                    stats.queueSize(priorityQueue.size());
                 }
             }
         }
 
+        finishQuery(stats, false);
         return Collections.emptyList();
     }
 
+    /**
+     * Lower bounds on the minutes from every stop to the target: a backward search over the fastest hop of each allowed
+     * pattern and every walk the forward search could take. Waiting is ignored, so the bounds hold at any time of day.
+     * The search stops {@link #BACKWARD_SLACK_MINUTES} after settling the origin; stops it did not settle
+     * get the last settled bound, which none of them can beat. Only if it runs out of stops are the rest unreachable.
+     */
+    private int @NotNull [] lowerBounds(
+            @NotNull Stop origin,
+            @NotNull Stop target,
+            @NotNull ModeTable modes,
+            @NotNull TPreference preferences,
+            @NotNull QueryStats stats
+    ) {
+        boolean canWalk = !modes.isForbidden(TType.FOOT);
+        double maxWalkingDistance = preferences.getWalkingSpeed() * preferences.getMaxWalkingTime();
+
+        int[] bounds = new int[stopsByIndex.length];
+        Arrays.fill(bounds, UNREACHABLE);
+        boolean[] settled = new boolean[stopsByIndex.length];
+        PriorityQueue<Bound> queue = new PriorityQueue<>();
+        bounds[target.getIndex()] = 0;
+        queue.add(new Bound(target.getIndex(), 0));
+
+        int limit = UNREACHABLE;
+        int horizon = 0;
+        boolean exhausted = true;
+        while (!queue.isEmpty()) {
+            Bound current = queue.poll();
+            if (settled[current.stop]) continue;
+            if (current.minutes > limit) {
+                exhausted = false;
+                break;
+            }
+            settled[current.stop] = true;
+            horizon = current.minutes;
+            if (current.stop == origin.getIndex()) limit = current.minutes + BACKWARD_SLACK_MINUTES;
+            stats.settledBackward();
+            if (recorder != null) recorder.recordBackwardState();
+
+            Stop currentStop = stopsByIndex[current.stop];
+            ensureLoaded(currentStop);
+            // Scheduled hops bound realtime ones too, since delays shift whole trips
+            for (PatternStop visit : currentStop.getPatterns()) {
+                TripPattern pattern = visit.pattern();
+                int position = visit.position();
+                if (position == 0 || !modes.allowsAny(pattern.getModeMask())) continue;
+
+                int previous = pattern.getStopIndexes()[position - 1];
+                stats.relaxed();
+                relaxBound(bounds, queue, previous, current.minutes + pattern.minimumHopMinutes(position - 1));
+            }
+
+            if (!canWalk) continue;
+            for (Stop nearbyStop : findNearby(currentStop, maxWalkingDistance, stats)) {
+                double distance = QuadTree.calculateDistance(
+                        currentStop.getLatitude(), currentStop.getLongitude(),
+                        nearbyStop.getLatitude(), nearbyStop.getLongitude()
+                );
+                int walkingTimeMinutes = (int) Math.ceil(distance / preferences.getWalkingSpeed());
+                if (walkingTimeMinutes > preferences.getMaxWalkingTime()) continue;
+
+                // Very short walks take no time, see Connection#createWalkingConnection
+                stats.relaxed();
+                relaxBound(bounds, queue, nearbyStop.getIndex(), current.minutes + (walkingTimeMinutes <= 1 ? 0 : walkingTimeMinutes));
+            }
+        }
+
+        if (!exhausted) {
+            for (int stop = 0; stop < bounds.length; stop++) {
+                if (!settled[stop]) bounds[stop] = horizon;
+            }
+        }
+        Log.debug("Backward search bounded the origin at %d minutes", bounds[origin.getIndex()]);
+        return bounds;
+    }
+
+    /**
+     * Bound of the stop from the hub labels if the search runs on them, else from the backward search
+     */
+    private static int bound(
+            HubLabels.TargetBounds targetBounds,
+            int[] bounds,
+            int stop
+    ) {
+        return targetBounds != null ? targetBounds.from(stop) : bounds[stop];
+    }
+
+    private static void relaxBound(
+            int @NotNull [] bounds,
+            @NotNull PriorityQueue<Bound> queue,
+            int stop,
+            int minutes
+    ) {
+        if (minutes >= bounds[stop]) return;
+        bounds[stop] = minutes;
+        queue.add(new Bound(stop, minutes));
+    }
+
     private @NotNull List<Connection> findPossibleConnections(
             @NotNull DijkstraState current,
+            Timetable timetable,
+            ModeTable modes,
             TPreference preferences,
-            Stop targetStop
+            Stop targetStop,
+            QueryStats stats
     ) {
         List<Connection> connections = new ArrayList<>();
-        Stop currentStop = stops.get(current.stopId);
-
-        if (currentStop == null) return connections;
-        addTransitConnections(connections, current, currentStop, preferences, targetStop);
-        addWalkingConnections(connections, current, currentStop, preferences);
+        Stop currentStop = stopsByIndex[current.stop];
+        ensureLoaded(currentStop);
+        // Stops served only by forbidden modes have nothing to board
+        if (modes.allowsAny(currentStop.getModeMask())) {
+            addTransitConnections(connections, current, currentStop, timetable, modes, preferences, targetStop);
+        }
+        if (!modes.isForbidden(TType.FOOT)) addWalkingConnections(connections, current, currentStop, preferences, stats);
 
         return connections;
     }
@@ -157,64 +313,114 @@ public class DPathfinder extends AbstractPathfinder {
             List<Connection> connections,
             @NotNull DijkstraState current,
             @NotNull Stop currentStop,
+            @NotNull Timetable timetable,
+            @NotNull ModeTable modes,
             @NotNull TPreference preferences,
             Stop targetStop
     ) {
         LocalTime currentTime = current.time;
+        int currentMinute = toMinutes(currentTime);
+        long queryDay = ServiceDays.epochDay(preferences.getServiceDate());
+
+        for (PatternStop visit : timetable.patternsAt(currentStop)) {
+            TripPattern pattern = visit.pattern();
+            if (!modes.allowsAny(pattern.getModeMask())) continue;
+
+            int position = visit.position();
+            // Current stop is the last stop
+            if (position == pattern.length() - 1) continue;
+
+            Stop[] stops = pattern.getStops();
+            int end = Math.min(pattern.length(), position + MAX_STOPS_PER_TRIP + 1);
+            // Boarding on a mode switch must leave the minimum transfer time to the stop ridden to
+            boolean switching = current.lastMode != null && current.lastMode != pattern.getRoute().getType() &&
+                    pattern.getRoute().getType() != TType.FOOT;
+            double[] transferMinutes = new double[end - position];
+            for (int i = position + 1; i < end; i++) {
+                transferMinutes[i - position] = switching ? calculateTransferTime(currentStop, stops[i]) : 0;
+            }
 
-        for (Trip trip : currentStop.getTrips().values()) {
-            Route route = trip.getRoute();
-            if (route == null) continue;
-            if (preferences.getForbiddenModes().contains(route.getType())) continue;
-
-            LocalTime tripStopTime = trip.getTimeForStop(currentStop);
-
-            // Skip if the trip's time is null or before current time
-            if (tripStopTime == null || isBefore(tripStopTime, currentTime)) continue;
-
-            // Time window pruning - skip connections with excessive wait times
-            if (!isWorthConsideringTime(currentTime, tripStopTime)) continue;
-
-            // Get all stops after this one in the trip
-            List<Stop> tripStops = trip.getOrderedStops();
-            int currentStopIndex = -1;
+            // Trips of earlier service days still running after midnight are matched on their clock time
+            for (int day = 0; day <= pattern.getOverflowDays(); day++) {
+                int dayStart = day * SECONDS_PER_DAY;
+                long serviceDay = serviceDay(queryDay, current.dayOffset - day);
+                // First usable trip to each of the next stops, by offset from the position; -1 until one is found
+                int[] firstTrips = new int[end - position];
+                Arrays.fill(firstTrips, -1);
+                int open = 0;
+                for (int i = position + 1; i < end; i++) {
+                    // Direction-based pruning - skip if moving away from target
+                    if (isWorthExploring(currentStop, stops[i], targetStop)) open++;
+                    else firstTrips[i - position] = Integer.MAX_VALUE;
+                }
 
-            // Find current stop index
-            for (int i = 0; i < tripStops.size(); i++) {
-                if (tripStops.get(i).getStopId().equals(currentStop.getStopId())) {
-                    currentStopIndex = i;
-                    break;
+                for (int t = pattern.firstDeparture(position, dayStart + currentMinute * 60); t < pattern.size() && open > 0; t++) {
+                    int seconds = pattern.time(t, position);
+                    // Trips are sorted by departure, so nothing later is within the time window
+                    if (seconds >= dayStart + SECONDS_PER_DAY || (seconds - dayStart) / 60 - currentMinute > MAX_WAIT_MINUTES) break;
+                    if (!pattern.getTrips()[t].runsOn(serviceDay)) continue;
+
+                    LocalTime tripStopTime = pattern.timeOfDay(t, position);
+                    if (isBefore(tripStopTime, currentTime)) continue;
+
+                    // Time window pruning - skip connections with excessive wait times
+                    if (!isWorthConsideringTime(currentTime, tripStopTime)) continue;
+
+                    long waitingMinutes = calculateMinutesBetween(currentTime, tripStopTime, 0);
+                    for (int i = position + 1; i < end; i++) {
+                        int offset = i - position;
+                        int first = firstTrips[offset];
+                        if (first == Integer.MAX_VALUE || waitingMinutes < transferMinutes[offset]) continue;
+                        if (first < 0) {
+                            firstTrips[offset] = t;
+                            // Every trip runs to the same schedule, so none after this one rides faster
+                            if (pattern.getProfileCount() == 1) open--;
+                        } else if (!ridesFaster(pattern, t, first, position, i)) continue;
+                        addTripConnection(connections, currentStop, pattern, t, position, i, tripStopTime);
+                    }
                 }
             }
+        }
+    }
 
-            if (currentStopIndex == -1 || currentStopIndex == tripStops.size() - 1)
-                continue; // Current stop not found or is the last stop
-
-            // Add connections to the next few stops (not all of them)
-            int maxStopsToConsider = Math.min(tripStops.size(), currentStopIndex + 5);
-
-            for (int i = currentStopIndex + 1; i < maxStopsToConsider; i++) {
-                Stop nextStop = tripStops.get(i);
-                LocalTime nextStopTime = trip.getTimeForStop(nextStop);
-
-                // Direction-based pruning - skip if moving away from target
-                if (!isWorthExploring(currentStop, nextStop, stops.get(targetStop.getStopId()))) continue;
-
-                if (nextStopTime != null && (isAfter(nextStopTime, tripStopTime) ||
-                        (nextStopTime.equals(tripStopTime) && i > currentStopIndex))) {
+    /**
+     * Whether the trip rides from the position to the stop in fewer minutes than the earlier one. Waiting costs no less
+     * as it gets longer, so a later trip that does not ride faster never costs less and arrives no earlier.
+     */
+    private static boolean ridesFaster(
+            @NotNull TripPattern pattern,
+            int trip,
+            int earlier,
+            int position,
+            int stopPosition
+    ) {
+        return pattern.time(trip, stopPosition) / 60 - pattern.time(trip, position) / 60 <
+                pattern.time(earlier, stopPosition) / 60 - pattern.time(earlier, position) / 60;
+    }
 
-                    connections.add(new Connection(
-                            currentStop.getStopId(),
-                            nextStop.getStopId(),
-                            trip.getTripId(),
-                            route.getRouteId(),
-                            route.getShortName(),
-                            tripStopTime,
-                            nextStopTime,
-                            route.getType().toString()
-                    ));
-                }
-            }
+    private void addTripConnection(
+            List<Connection> connections,
+            @NotNull Stop currentStop,
+            @NotNull TripPattern pattern,
+            int trip,
+            int position,
+            int stopPosition,
+            LocalTime tripStopTime
+    ) {
+        Stop nextStop = pattern.getStops()[stopPosition];
+        LocalTime nextStopTime = pattern.timeOfDay(trip, stopPosition);
+        if (isAfter(nextStopTime, tripStopTime) || nextStopTime.equals(tripStopTime)) {
+            Route route = pattern.getRoute();
+            connections.add(new Connection(
+                    currentStop.getIndex(),
+                    nextStop.getIndex(),
+                    pattern.getTrips()[trip].getTripId(),
+                    route.getRouteId(),
+                    route.getShortName(),
+                    tripStopTime,
+                    nextStopTime,
+                    route.getType()
+            ));
         }
     }
 
@@ -222,21 +428,15 @@ public class DPathfinder extends AbstractPathfinder {
             List<Connection> connections,
             DijkstraState current,
             Stop currentStop,
-            @NotNull TPreference preferences
+            @NotNull TPreference preferences,
+            QueryStats stats
     ) {
-        if (preferences.getForbiddenModes().contains(TType.FOOT)) return;
-
         // Find nearby stops within walking distance
         double maxWalkingDistance = preferences.getWalkingSpeed() * preferences.getMaxWalkingTime();
-        List<Stop> nearbyStops = stopQuadTree.findNearby(
-                currentStop.getLatitude(),
-                currentStop.getLongitude(),
-                maxWalkingDistance
-        );
+        List<Stop> nearbyStops = findWalkTargets(currentStop, maxWalkingDistance, stats);
 
         for (Stop nearbyStop : nearbyStops) {
-            // Skip if from and to are the same stop or refer to same physical location
-            if (nearbyStop.getStopId().equals(currentStop.getStopId()) || nearbyStop.getName().equals(currentStop.getName())) continue;
+            if (nearbyStop == currentStop) continue;
 
             // Calculate walking time
             double distance = QuadTree.calculateDistance(
@@ -250,39 +450,69 @@ public class DPathfinder extends AbstractPathfinder {
             if (walkingTimeMinutes > preferences.getMaxWalkingTime()) continue;
 
             connections.add(Connection.createWalkingConnection(
-                    currentStop.getStopId(),
-                    nearbyStop.getStopId(),
+                    currentStop.getIndex(),
+                    nearbyStop.getIndex(),
                     current.time,
                     walkingTimeMinutes
             ));
         }
+
+        // Other platforms of the same station
+        for (Stop platform : stationTransfers(currentStop)) {
+            if (platform == currentStop) continue;
+            int transferMinutes = stationOf(currentStop).transferMinutes(currentStop, platform, preferences.getWalkingSpeed());
+            if (transferMinutes > preferences.getMaxWalkingTime()) continue;
+
+            connections.add(Connection.createWalkingConnection(
+                    currentStop.getIndex(),
+                    platform.getIndex(),
+                    current.time,
+                    transferMinutes
+            ));
+        }
     }
 
     /**
      * Class to represent a state in the Dijkstra algorithm
      */
     private record DijkstraState(
-            String stopId,
+            int stop,
             LocalTime time,
             int dayOffset,
             double cost,
+            // Cost plus a lower bound on the cost left to the target; equal to cost outside bidirectional mode
+            double estimate,
             List<Transition> path,
-            String lastMode,
+            // Null until the first connection is taken
+            TType lastMode,
             int transfers
     ) implements Comparable<DijkstraState> {
 
         @Contract(pure = true)
         @Override
         public int compareTo(@NotNull DijkstraState other) {
-            // Pure Dijkstra: compare only on cost
-            return Double.compare(this.cost, other.cost);
+            // Pure Dijkstra compares only on cost; with bounds this is A* on the estimate
+            return Double.compare(this.estimate, other.estimate);
         }
 
         @Override
         public @NotNull String toString() {
-            return "State{stopId='" + stopId + "', time=" + time +
+            return "State{stop=" + stop + ", time=" + time +
                     ", cost=" + cost + ", transfers=" + transfers +
                     ", pathLen=" + path.size() + '}';
         }
     }
+
+    /**
+     * Entry of the backward search queue
+     */
+    private record Bound(
+            int stop,
+            int minutes
+    ) implements Comparable<Bound> {
+        @Override
+        public int compareTo(@NotNull Bound other) {
+            return Integer.compare(minutes, other.minutes);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,310 @@
+package algo.transit.pathfinders;
+
+import algo.transit.enums.TType;
+import algo.transit.models.common.PatternStop;
+import algo.transit.models.common.Route;
+import algo.transit.models.common.ServiceDays;
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.Timetable;
+import algo.transit.models.common.Trip;
+import algo.transit.models.common.TripPattern;
+import algo.transit.models.pathfinder.Connection;
+import algo.transit.models.pathfinder.HubLabels;
+import algo.transit.models.pathfinder.ModeTable;
+import algo.transit.models.pathfinder.QueryStats;
+import algo.transit.models.pathfinder.TPreference;
+import algo.transit.models.pathfinder.Transition;
+import algo.transit.models.visualizer.StateRecorder;
+import algo.transit.utils.Log;
+import algo.transit.utils.QuadTree;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalTime;
+import java.util.*;
+
+import static algo.transit.utils.TimeUtils.*;
+
+/**
+ * Earliest-arrival pathfinder able to answer one-to-all queries.
+ * Every search keeps its state local, so a single instance can be shared by several threads.
+ */
+public class MatrixPathfinder extends AbstractPathfinder {
+    public static final int UNREACHABLE = -1;
+
+    public MatrixPathfinder(Map<String, Stop> stops) {
+        super(stops);
+    }
+
+    /**
+     * Computes the earliest arrival (in minutes after startTime) at every stop reachable from the origin,
+     * indexed by {@link Stop#getIndex()}. Stops that are not reached within maxTravelMinutes are {@link #UNREACHABLE}.
+     */
+    public int[] travelTimesFrom(
+            String originStopId,
+            LocalTime startTime,
+            @NotNull TPreference preferences,
+            int maxTravelMinutes
+    ) {
+        return search(originStopId, null, startTime, preferences, maxTravelMinutes).arrivals;
+    }
+
+    @Override
+    public List<Transition> findPath(
+            String startStopId,
+            String endStopId,
+            LocalTime startTime,
+            TPreference preferences
+    ) {
+        recorder = new StateRecorder();
+        recorder.setStartAndEndStops(startStopId, endStopId);
+
+        Stop endStop = stops.get(endStopId);
+        if (!stops.containsKey(startStopId) || endStop == null) {
+            Log.warn("Start or end stop not found");
+            return Collections.emptyList();
+        }
+
+        SearchResult result = search(startStopId, endStop, startTime, preferences, Integer.MAX_VALUE);
+        if (result.arrivals[endStop.getIndex()] == UNREACHABLE) return Collections.emptyList();
+
+        // Walk the parent connections back from the target
+        LinkedList<Connection> connections = new LinkedList<>();
+        for (Connection c = result.parents[endStop.getIndex()]; c != null; c = result.parents[c.fromStop()]) {
+            connections.addFirst(c);
+        }
+
+        List<Transition> path = new ArrayList<>();
+        int dayOffset = 0;
+        for (Connection connection : connections) {
+            Transition transition = toTransition(connection, 0.0, dayOffset);
+            dayOffset = transition.dayOffset();
+            path.add(transition);
+        }
+
+        recorder.recordFinalPath(path);
+        return path;
+    }
+
+    private @NotNull SearchResult search(
+            String originStopId,
+            Stop targetStop,
+            @NotNull LocalTime startTime,
+            @NotNull TPreference preferences,
+            int maxTravelMinutes
+    ) {
+        QueryStats stats = startQuery(originStopId, targetStop == null ? null : targetStop.getStopId());
+        SearchResult result = new SearchResult(stopsByIndex.length);
+        Stop origin = stops.get(originStopId);
+        if (origin == null) {
+            finishQuery(stats, false);
+            return result;
+        }
+
+        int startMinute = toMinutes(startTime);
+        ModeTable modes = ModeTable.of(preferences);
+        boolean canWalk = !modes.isForbidden(TType.FOOT);
+        long queryDay = ServiceDays.epochDay(preferences.getServiceDate());
+        Timetable timetable = timetableSource.get();
+        double maxWalkingDistance = preferences.getWalkingSpeed() * preferences.getMaxWalkingTime();
+
+        // With a target, stops that cannot reach it, or only after its best arrival so far, are not expanded
+        HubLabels labels = targetStop == null ? null : hubLabelsFor(preferences);
+        HubLabels.TargetBounds bounds = labels == null ? null : labels.boundsTo(targetStop);
+        if (bounds != null && bounds.from(origin.getIndex()) == HubLabels.UNREACHABLE) {
+            Log.debug("Target cannot be reached from the origin");
+            finishQuery(stats, false);
+            return result;
+        }
+
+        // Arrival times are absolute minutes since midnight of the query day, indexed by stop index
+        int[] best = new int[stopsByIndex.length];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        boolean[] settled = new boolean[stopsByIndex.length];
+        // Lowest position each run of a trip has already been scanned from, plus one so that 0 means never boarded.
+        // Indexed by run slot, then trip index: a trip runs once per service day, see runSlot.
+        int[][] boardedFrom = new int[1][1024];
+        PriorityQueue<Label> queue = new PriorityQueue<>();
+
+        best[origin.getIndex()] = startMinute;
+        queue.add(new Label(origin.getIndex(), startMinute));
+
+        while (!queue.isEmpty()) {
+            Label current = queue.poll();
+            if (settled[current.stop]) continue;
+            settled[current.stop] = true;
+            if (current.minute - startMinute > maxTravelMinutes) break;
+            stats.settled();
+
+            Stop currentStop = stopsByIndex[current.stop];
+            if (recorder != null && targetStop != null) recorder.recordExploredState(currentStop.getStopId());
+            result.arrivals[current.stop] = current.minute - startMinute;
+            if (currentStop == targetStop) break;
+            if (bounds != null) {
+                int bound = bounds.from(current.stop);
+                if (bound == HubLabels.UNREACHABLE || (long) current.minute + bound >= best[targetStop.getIndex()]) continue;
+            }
+
+            ensureLoaded(currentStop);
+            LocalTime clock = fromMinutes(current.minute);
+            int dayBase = current.minute - current.minute % MINUTES_PER_DAY;
+
+            // Stops served only by forbidden modes have nothing to board
+            PatternStop[] visits = modes.allowsAny(currentStop.getModeMask()) ? timetable.patternsAt(currentStop) : NO_PATTERNS;
+            for (PatternStop visit : visits) {
+                TripPattern pattern = visit.pattern();
+                if (!modes.allowsAny(pattern.getModeMask())) continue;
+
+                int position = visit.position();
+                if (position == pattern.length() - 1) continue;
+
+                // Trips never overtake within a pattern, so only the first one leaving after the arrival can improve anything.
+                // Trips of earlier service days still running after midnight are matched on their clock time.
+                for (int day = 0; day <= pattern.getOverflowDays(); day++) {
+                    int dayStart = day * SECONDS_PER_DAY;
+                    long serviceDay = serviceDay(queryDay, dayBase / MINUTES_PER_DAY - day);
+                    int trip = pattern.firstDeparture(position, dayStart + (current.minute - dayBase) * 60);
+                    while (trip < pattern.size() && !pattern.getTrips()[trip].runsOn(serviceDay)) trip++;
+                    if (trip == pattern.size() || pattern.time(trip, position) >= dayStart + SECONDS_PER_DAY) continue;
+
+                    boardedFrom = board(pattern, trip, position, current, dayBase + (pattern.time(trip, position) - dayStart) / 60,
+                            runSlot(pattern, dayBase, day), boardedFrom, best, queue, result, stats);
+                }
+            }
+
+            if (!canWalk) continue;
+
+            for (Stop nearbyStop : findWalkTargets(currentStop, maxWalkingDistance, stats)) {
+                if (nearbyStop == currentStop || settled[nearbyStop.getIndex()]) continue;
+
+                double distance = QuadTree.calculateDistance(
+                        currentStop.getLatitude(), currentStop.getLongitude(),
+                        nearbyStop.getLatitude(), nearbyStop.getLongitude()
+                );
+                int walkingTimeMinutes = (int) Math.ceil(distance / preferences.getWalkingSpeed());
+                if (walkingTimeMinutes > preferences.getMaxWalkingTime()) continue;
+
+                Connection walk = Connection.createWalkingConnection(
+                        current.stop,
+                        nearbyStop.getIndex(),
+                        clock,
+                        walkingTimeMinutes
+                );
+                int arrivalMinute = current.minute + (int) calculateMinutesBetween(walk.departureTime(), walk.arrivalTime());
+                if (relax(best, queue, nearbyStop.getIndex(), arrivalMinute, stats)) result.parents[nearbyStop.getIndex()] = walk;
+            }
+
+            for (Stop platform : stationTransfers(currentStop)) {
+                if (platform == currentStop || settled[platform.getIndex()]) continue;
+
+                int transferMinutes = stationOf(currentStop).transferMinutes(currentStop, platform, preferences.getWalkingSpeed());
+                if (transferMinutes > preferences.getMaxWalkingTime()) continue;
+
+                Connection transfer = Connection.createWalkingConnection(current.stop, platform.getIndex(), clock, transferMinutes);
+                if (relax(best, queue, platform.getIndex(), current.minute + transferMinutes, stats)) {
+                    result.parents[platform.getIndex()] = transfer;
+                }
+            }
+        }
+
+        // A one-to-all search has found what it was asked for once the origin exists
+        finishQuery(stats, targetStop == null || result.arrivals[targetStop.getIndex()] != UNREACHABLE);
+        return result;
+    }
+
+    /**
+     * Slot of the trips of the pattern that run on service day dayBase - day, counted in days from the query day.
+     * Shifted by the pattern's overflow days, so it is never negative.
+     */
+    private static int runSlot(
+            @NotNull TripPattern pattern,
+            int dayBase,
+            int day
+    ) {
+        return dayBase / MINUTES_PER_DAY - day + pattern.getOverflowDays();
+    }
+
+    /**
+     * Relaxes every stop after the boarding position, returning the possibly grown boardedFrom array
+     */
+    private int[][] board(
+            @NotNull TripPattern pattern,
+            int trip,
+            int position,
+            @NotNull Label current,
+            int departureMinute,
+            int runSlot,
+            int[][] boardedFrom,
+            int @NotNull [] best,
+            @NotNull PriorityQueue<Label> queue,
+            @NotNull SearchResult result,
+            @NotNull QueryStats stats
+    ) {
+        Trip tripData = pattern.getTrips()[trip];
+        Route route = pattern.getRoute();
+
+        // Downstream stops were already relaxed by an earlier boarding of the same run of this trip
+        int tripIndex = tripData.getIndex();
+        if (runSlot >= boardedFrom.length) boardedFrom = Arrays.copyOf(boardedFrom, runSlot + 1);
+        int[] run = boardedFrom[runSlot];
+        if (run == null) run = boardedFrom[runSlot] = new int[1024];
+        if (tripIndex >= run.length) run = boardedFrom[runSlot] = Arrays.copyOf(run, Math.max(tripIndex + 1, run.length * 2));
+        int scanLimit = tripIndex >= 0 && run[tripIndex] > 0 ? run[tripIndex] - 1 : pattern.length();
+        if (position >= scanLimit) return boardedFrom;
+        if (tripIndex >= 0) run[tripIndex] = position + 1;
+
+        LocalTime departure = pattern.timeOfDay(trip, position);
+        for (int i = position + 1; i < scanLimit; i++) {
+            LocalTime arrival = pattern.timeOfDay(trip, i);
+            int nextStop = pattern.getStopIndexes()[i];
+
+            int arrivalMinute = departureMinute + (int) calculateMinutesBetween(departure, arrival);
+            if (relax(best, queue, nextStop, arrivalMinute, stats)) {
+                result.parents[nextStop] = new Connection(
+                        current.stop,
+                        nextStop,
+                        tripData.getTripId(),
+                        route.getRouteId(),
+                        route.getShortName(),
+                        departure,
+                        arrival,
+                        route.getType()
+                );
+            }
+        }
+        return boardedFrom;
+    }
+
+    private static boolean relax(
+            int @NotNull [] best,
+            @NotNull PriorityQueue<Label> queue,
+            int stop,
+            int arrivalMinute,
+            @NotNull QueryStats stats
+    ) {
+        stats.relaxed();
+        if (best[stop] <= arrivalMinute) return false;
+
+        best[stop] = arrivalMinute;
+        queue.add(new Label(stop, arrivalMinute));
+        stats.queueSize(queue.size());
+        return true;
+    }
+
+    private static class SearchResult {
+        final int[] arrivals;
+        final Connection[] parents;
+
+        SearchResult(int stopCount) {
+            arrivals = new int[stopCount];
+            parents = new Connection[stopCount];
+            Arrays.fill(arrivals, UNREACHABLE);
+        }
+    }
+
+    private record Label(int stop, int minute) implements Comparable<Label> {
+        @Override
+        public int compareTo(@NotNull Label other) {
+            return Integer.compare(this.minute, other.minute);
+        }
+    }
+}
\ No newline at end of file
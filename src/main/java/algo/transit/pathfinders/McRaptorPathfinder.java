@@ -0,0 +1,626 @@
+package algo.transit.pathfinders;
+
+import algo.transit.enums.TType;
+import algo.transit.models.common.PatternStop;
+import algo.transit.models.common.Route;
+import algo.transit.models.common.ServiceDays;
+import algo.transit.models.common.Station;
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.Timetable;
+import algo.transit.models.common.Trip;
+import algo.transit.models.common.TripPattern;
+import algo.transit.models.pathfinder.HubLabels;
+import algo.transit.models.pathfinder.Journey;
+import algo.transit.models.pathfinder.ModeTable;
+import algo.transit.models.pathfinder.QueryStats;
+import algo.transit.models.pathfinder.TPreference;
+import algo.transit.models.pathfinder.Transition;
+import algo.transit.models.visualizer.StateRecorder;
+import algo.transit.utils.Log;
+import algo.transit.utils.QuadTree;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalTime;
+import java.util.*;
+
+import static algo.transit.utils.TimeUtils.*;
+
+/**
+ * Multi-criteria round-based pathfinder (McRAPTOR style).
+ * Keeps a Pareto bag per stop over arrival time, number of transfers and walked meters,
+ * and returns every non-dominated journey to the target instead of a single scalarised optimum.
+ */
+public class McRaptorPathfinder extends AbstractPathfinder {
+    public static final int DEFAULT_MAX_TRANSFERS = 6;
+
+    private static final int LEG_ORIGIN = 0;
+    private static final int LEG_RIDE = 1;
+    private static final int LEG_WALK = 2;
+
+    private final int maxTransfers;
+
+    public McRaptorPathfinder(Map<String, Stop> stops) {
+        this(stops, DEFAULT_MAX_TRANSFERS);
+    }
+
+    public McRaptorPathfinder(
+            Map<String, Stop> stops,
+            int maxTransfers
+    ) {
+        super(stops);
+        this.maxTransfers = maxTransfers;
+    }
+
+    /**
+     * Returns the fastest journey of the Pareto set
+     */
+    @Override
+    public List<Transition> findPath(
+            String startStopId,
+            String endStopId,
+            LocalTime startTime,
+            TPreference preferences
+    ) {
+        List<Journey> journeys = findParetoPaths(startStopId, endStopId, startTime, preferences);
+        return journeys.isEmpty() ? Collections.emptyList() : journeys.getFirst().path();
+    }
+
+    /**
+     * Finds all Pareto-optimal journeys, sorted by arrival time
+     */
+    public List<Journey> findParetoPaths(
+            String startStopId,
+            String endStopId,
+            LocalTime startTime,
+            @NotNull TPreference preferences
+    ) {
+        QueryStats stats = startQuery(startStopId, endStopId);
+        recorder = new StateRecorder();
+        recorder.setStartAndEndStops(startStopId, endStopId);
+
+        Stop startStop = stops.get(startStopId);
+        Stop endStop = stops.get(endStopId);
+
+        if (startStop == null || endStop == null) {
+            Log.warn("Start or end stop not found");
+            finishQuery(stats, false);
+            return Collections.emptyList();
+        }
+
+        long queryDay = ServiceDays.epochDay(preferences.getServiceDate());
+        Timetable timetable = timetableSource.get();
+        ModeTable modes = ModeTable.of(preferences);
+        HubLabels hubLabels = hubLabelsFor(preferences);
+        HubLabels.TargetBounds bounds = hubLabels == null ? null : hubLabels.boundsTo(endStop);
+        if (bounds != null && bounds.from(startStop.getIndex()) == HubLabels.UNREACHABLE) {
+            Log.debug("Target cannot be reached from the origin");
+            finishQuery(stats, false);
+            return Collections.emptyList();
+        }
+        LabelStore labels = new LabelStore();
+        // Indexed by stop index
+        Bag[] bags = new Bag[stopsByIndex.length];
+        List<Trip> boardedTrips = new ArrayList<>();
+        Map<Trip, Integer> tripRefs = new IdentityHashMap<>();
+
+        int origin = labels.add(startStop.getIndex(), toMinutes(startTime), 0, 0, -1, LEG_ORIGIN, -1, 0);
+        bags[startStop.getIndex()] = new Bag();
+        bags[startStop.getIndex()].insert(labels, origin);
+
+        // Labels created in the previous round, whose stops must be scanned in this one
+        LabelList marked = new LabelList();
+        marked.add(origin);
+        relaxFootpaths(labels, bags, marked, endStop, bounds, modes, preferences, stats);
+        LabelList rideLabels = new LabelList();
+        MarkedStops markedStops = new MarkedStops(stopsByIndex.length);
+
+        for (int round = 1; round <= maxTransfers + 1 && marked.size > 0; round++) {
+            // Marked labels play the part of the queue in a round-based search
+            stats.queueSize(marked.size);
+
+            // Each pattern serving a marked stop is scanned once, from the first position where a marked label can board
+            markedStops.reset(marked.size);
+            Map<TripPattern, Integer> patterns = new LinkedHashMap<>();
+            for (int i = 0; i < marked.size; i++) {
+                // Labels removed by dominance since they were marked no longer need scanning
+                int labelId = marked.ids[i];
+                Stop stop = stopsByIndex[labels.stop[labelId]];
+                if (!bags[stop.getIndex()].contains(labelId)) continue;
+                stats.settled();
+                recorder.recordExploredState(stop.getStopId());
+                ensureLoaded(stop);
+                markedStops.link(stop.getIndex(), i);
+
+                // Stops served only by forbidden modes have nothing to board
+                PatternStop[] visits = modes.allowsAny(stop.getModeMask()) ? timetable.patternsAt(stop) : NO_PATTERNS;
+                for (PatternStop visit : visits) {
+                    if (!modes.allowsAny(visit.pattern().getModeMask())) continue;
+                    patterns.merge(visit.pattern(), visit.position(), Math::min);
+                }
+            }
+
+            for (Map.Entry<TripPattern, Integer> entry : patterns.entrySet()) {
+                scanPattern(labels, bags, endStop, bounds, entry.getKey(), entry.getValue(), marked, markedStops,
+                        queryDay, tripRefs, boardedTrips, rideLabels, stats);
+            }
+            markedStops.clear(labels, marked);
+
+            relaxFootpaths(labels, bags, rideLabels, endStop, bounds, modes, preferences, stats);
+            LabelList scanned = marked;
+            marked = rideLabels;
+            rideLabels = scanned;
+            rideLabels.size = 0;
+        }
+
+        Bag targetBag = bags[endStop.getIndex()];
+        if (targetBag == null) {
+            finishQuery(stats, false);
+            return Collections.emptyList();
+        }
+
+        List<Journey> journeys = new ArrayList<>();
+        for (int i = 0; i < targetBag.size; i++) {
+            int labelId = targetBag.ids[i];
+            journeys.add(new Journey(
+                    buildPath(labels, boardedTrips, labelId),
+                    labels.arrival[labelId] - labels.arrival[origin],
+                    Math.max(0, labels.boardings[labelId] - 1),
+                    labels.walk[labelId]
+            ));
+        }
+        journeys.sort(Comparator.comparingInt(Journey::travelMinutes)
+                .thenComparingInt(Journey::transfers)
+                .thenComparingInt(Journey::walkingMeters));
+
+        Log.debug("Pareto search kept %d labels, %d non-dominated journeys", labels.size, journeys.size());
+        if (!journeys.isEmpty()) recorder.recordFinalPath(journeys.getFirst().path());
+        finishQuery(stats, !journeys.isEmpty());
+        return journeys;
+    }
+
+    /**
+     * Walks from the labels of the list, appending the walk labels kept to the same list.
+     * Footpaths are not chained within a round, so the other platforms of a station walked to are reached here too,
+     * by the walk to its nearest stop plus the transfer from there.
+     */
+    private void relaxFootpaths(
+            LabelStore labels,
+            Bag[] bags,
+            @NotNull LabelList sources,
+            Stop endStop,
+            HubLabels.TargetBounds bounds,
+            @NotNull ModeTable modes,
+            @NotNull TPreference preferences,
+            @NotNull QueryStats stats
+    ) {
+        if (modes.isForbidden(TType.FOOT)) return;
+
+        double walkingSpeed = preferences.getWalkingSpeed();
+        double maxWalkingDistance = walkingSpeed * preferences.getMaxWalkingTime();
+
+        for (int i = 0, count = sources.size; i < count; i++) {
+            int labelId = sources.ids[i];
+            Stop stop = stopsByIndex[labels.stop[labelId]];
+            if (!bags[stop.getIndex()].contains(labelId)) continue;
+
+            for (Stop nearbyStop : findWalkTargets(stop, maxWalkingDistance, stats)) {
+                if (nearbyStop == stop) continue;
+
+                double distance = distance(stop, nearbyStop);
+                int walkingTimeMinutes = (int) Math.ceil(distance / walkingSpeed);
+                if (walkingTimeMinutes > preferences.getMaxWalkingTime()) continue;
+
+                walk(labels, bags, endStop, bounds, sources, labelId, nearbyStop, walkingTimeMinutes, distance, stats);
+                Station station = stationOf(nearbyStop);
+                if (station == null) continue;
+
+                for (Stop platform : station.getStops()) {
+                    if (platform == nearbyStop) continue;
+                    int transferMinutes = station.transferMinutes(nearbyStop, platform, walkingSpeed);
+                    if (transferMinutes > preferences.getMaxWalkingTime()) continue;
+
+                    walk(labels, bags, endStop, bounds, sources, labelId, platform, walkingTimeMinutes + transferMinutes,
+                            distance + distance(nearbyStop, platform), stats);
+                }
+            }
+
+            // Changing platforms counts as walking straight to the other one
+            for (Stop platform : stationTransfers(stop)) {
+                if (platform == stop) continue;
+                int transferMinutes = stationOf(stop).transferMinutes(stop, platform, walkingSpeed);
+                if (transferMinutes > preferences.getMaxWalkingTime()) continue;
+
+                walk(labels, bags, endStop, bounds, sources, labelId, platform, transferMinutes, distance(stop, platform), stats);
+            }
+        }
+    }
+
+    /**
+     * Adds a walk leg from the label to the stop, appending it to the list if no label of the stop dominates it
+     */
+    private void walk(
+            LabelStore labels,
+            Bag[] bags,
+            Stop endStop,
+            HubLabels.TargetBounds bounds,
+            @NotNull LabelList walkLabels,
+            int labelId,
+            @NotNull Stop stop,
+            int minutes,
+            double meters,
+            @NotNull QueryStats stats
+    ) {
+        int candidate = labels.add(
+                stop.getIndex(),
+                labels.arrival[labelId] + minutes,
+                labels.boardings[labelId],
+                labels.walk[labelId] + (int) Math.round(meters),
+                labelId,
+                LEG_WALK,
+                -1,
+                labels.arrival[labelId]
+        );
+        stats.relaxed();
+        if (insert(labels, bags, endStop, bounds, candidate)) walkLabels.add(candidate);
+        else labels.discardLast();
+    }
+
+    private static double distance(
+            @NotNull Stop from,
+            @NotNull Stop to
+    ) {
+        return QuadTree.calculateDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+    }
+
+    /**
+     * Scans a pattern from the given position in stop order, as a RAPTOR route scan. The labels riding the pattern
+     * alight at every stop, then the marked labels of the stop board the earliest trip they can catch.
+     * Trips never overtake within a pattern, so a later trip could only give dominated labels.
+     */
+    private void scanPattern(
+            @NotNull LabelStore labels,
+            Bag @NotNull [] bags,
+            @NotNull Stop endStop,
+            HubLabels.TargetBounds bounds,
+            @NotNull TripPattern pattern,
+            int from,
+            @NotNull LabelList marked,
+            @NotNull MarkedStops markedStops,
+            long queryDay,
+            @NotNull Map<Trip, Integer> tripRefs,
+            @NotNull List<Trip> boardedTrips,
+            @NotNull LabelList rideLabels,
+            @NotNull QueryStats stats
+    ) {
+        List<Boarding> riding = new ArrayList<>();
+        for (int position = from; position < pattern.length(); position++) {
+            int stop = pattern.getStopIndexes()[position];
+            for (Boarding boarding : riding) {
+                int candidate = labels.add(
+                        stop,
+                        boarding.arrivalAt(pattern, position),
+                        labels.boardings[boarding.labelId()] + 1,
+                        labels.walk[boarding.labelId()],
+                        boarding.labelId(),
+                        LEG_RIDE,
+                        boarding.tripRef(),
+                        boarding.departureMinute()
+                );
+                stats.relaxed();
+                if (insert(labels, bags, endStop, bounds, candidate)) rideLabels.add(candidate);
+                else labels.discardLast();
+            }
+
+            if (position == pattern.length() - 1) continue;
+            for (int i = markedStops.head[stop]; i >= 0; i = markedStops.next[i]) {
+                int labelId = marked.ids[i];
+                if (!bags[stop].contains(labelId)) continue;
+                Boarding boarding = earliestBoarding(labels, labelId, pattern, position, queryDay, tripRefs, boardedTrips);
+                if (boarding != null) addBoarding(labels, riding, boarding, pattern, position);
+            }
+        }
+    }
+
+    /**
+     * The earliest trip of the pattern the label can catch at the position, over every service day still running
+     */
+    private Boarding earliestBoarding(
+            @NotNull LabelStore labels,
+            int labelId,
+            @NotNull TripPattern pattern,
+            int position,
+            long queryDay,
+            @NotNull Map<Trip, Integer> tripRefs,
+            @NotNull List<Trip> boardedTrips
+    ) {
+        int arrival = labels.arrival[labelId];
+        int dayBase = arrival - arrival % MINUTES_PER_DAY;
+        int bestTrip = -1;
+        int bestDeparture = Integer.MAX_VALUE;
+
+        // Trips of earlier service days still running after midnight are matched on their clock time
+        for (int day = 0; day <= pattern.getOverflowDays(); day++) {
+            int dayStart = day * SECONDS_PER_DAY;
+            long serviceDay = serviceDay(queryDay, dayBase / MINUTES_PER_DAY - day);
+            int trip = pattern.firstDeparture(position, dayStart + (arrival - dayBase) * 60);
+            while (trip < pattern.size() && !pattern.getTrips()[trip].runsOn(serviceDay)) trip++;
+            if (trip == pattern.size()) continue;
+
+            int seconds = pattern.time(trip, position);
+            // Later trips only wait longer, so when this one is out of the time window they all are
+            if (seconds >= dayStart + SECONDS_PER_DAY || dayBase + (seconds - dayStart) / 60 - arrival > MAX_WAIT_MINUTES) continue;
+            LocalTime departure = pattern.timeOfDay(trip, position);
+            if (!isWorthConsideringTime(fromMinutes(arrival), departure)) continue;
+
+            int departureMinute = dayBase + toMinutes(departure);
+            if (departureMinute < bestDeparture) {
+                bestTrip = trip;
+                bestDeparture = departureMinute;
+            }
+        }
+        if (bestTrip < 0) return null;
+
+        int tripRef = tripRefs.computeIfAbsent(pattern.getTrips()[bestTrip], t -> {
+            boardedTrips.add(t);
+            return boardedTrips.size() - 1;
+        });
+        return new Boarding(labelId, bestTrip, position, bestDeparture, tripRef);
+    }
+
+    /**
+     * Adds a boarding to the labels riding the pattern, unless one of them is at least as good on every criterion;
+     * those the new one is at least as good as are dropped
+     */
+    private static void addBoarding(
+            @NotNull LabelStore labels,
+            @NotNull List<Boarding> riding,
+            @NotNull Boarding boarding,
+            @NotNull TripPattern pattern,
+            int position
+    ) {
+        int arrival = boarding.departureMinute();
+        int boardings = labels.boardings[boarding.labelId()];
+        int walk = labels.walk[boarding.labelId()];
+        for (Boarding other : riding) {
+            if (other.arrivalAt(pattern, position) <= arrival && labels.boardings[other.labelId()] <= boardings
+                    && labels.walk[other.labelId()] <= walk) return;
+        }
+        riding.removeIf(other -> arrival <= other.arrivalAt(pattern, position) && boardings <= labels.boardings[other.labelId()]
+                && walk <= labels.walk[other.labelId()]);
+        riding.add(boarding);
+    }
+
+    /**
+     * Inserts a label into its stop's bag unless the stop's bag or the target's bag dominates it.
+     * With hub labels, the label is first moved to the earliest time it could reach the target.
+     */
+    private static boolean insert(
+            @NotNull LabelStore labels,
+            Bag @NotNull [] bags,
+            @NotNull Stop endStop,
+            HubLabels.TargetBounds bounds,
+            int labelId
+    ) {
+        int stop = labels.stop[labelId];
+        int arrival = labels.arrival[labelId];
+        if (bounds != null) {
+            int bound = bounds.from(stop);
+            if (bound == HubLabels.UNREACHABLE) return false;
+            arrival += bound;
+        }
+
+        // Target pruning: nothing reachable from a label dominated at the target can improve the result
+        Bag targetBag = bags[endStop.getIndex()];
+        if (targetBag != null && targetBag.dominates(labels, arrival, labels.boardings[labelId], labels.walk[labelId])) return false;
+
+        if (bags[stop] == null) bags[stop] = new Bag();
+        return bags[stop].insert(labels, labelId);
+    }
+
+    private @NotNull List<Transition> buildPath(
+            LabelStore labels,
+            List<Trip> boardedTrips,
+            int labelId
+    ) {
+        LinkedList<Integer> chain = new LinkedList<>();
+        for (int id = labelId; labels.legType[id] != LEG_ORIGIN; id = labels.parent[id]) chain.addFirst(id);
+
+        List<Transition> path = new ArrayList<>();
+        for (int id : chain) {
+            int parent = labels.parent[id];
+            int departure = labels.departure[id];
+            int arrival = labels.arrival[id];
+            TType mode = TType.FOOT;
+            String routeName = "";
+
+            if (labels.legType[id] == LEG_RIDE) {
+                Route route = boardedTrips.get(labels.trip[id]).getRoute();
+                mode = route.getType();
+                routeName = route.getShortName();
+            } else if (arrival - departure <= 1) {
+                routeName = "transfer";
+            }
+
+            path.add(new Transition(
+                    stopId(labels.stop[parent]),
+                    stopId(labels.stop[id]),
+                    mode,
+                    routeName,
+                    fromMinutes(departure),
+                    fromMinutes(arrival),
+                    arrival / MINUTES_PER_DAY,
+                    0.0
+            ));
+        }
+
+        return path;
+    }
+
+    /**
+     * A label riding one trip of the pattern being scanned, since the given position
+     */
+    private record Boarding(
+            int labelId,
+            int trip,
+            int position,
+            int departureMinute,
+            int tripRef
+    ) {
+        int arrivalAt(
+                @NotNull TripPattern pattern,
+                int stopPosition
+        ) {
+            return departureMinute + (int) calculateMinutesBetween(pattern.timeOfDay(trip, position), pattern.timeOfDay(trip, stopPosition));
+        }
+    }
+
+    /**
+     * Set of mutually non-dominated label ids for one stop
+     */
+    private static class Bag {
+        int[] ids = new int[4];
+        int size = 0;
+
+        boolean contains(int labelId) {
+            for (int i = 0; i < size; i++) if (ids[i] == labelId) return true;
+            return false;
+        }
+
+        boolean dominates(LabelStore labels, int labelId) {
+            for (int i = 0; i < size; i++) if (labels.dominates(ids[i], labelId)) return true;
+            return false;
+        }
+
+        /**
+         * Whether a label of the bag is at least as good as the given criteria on all three
+         */
+        boolean dominates(LabelStore labels, int arrival, int boardings, int walk) {
+            for (int i = 0; i < size; i++) {
+                int id = ids[i];
+                if (labels.arrival[id] <= arrival && labels.boardings[id] <= boardings && labels.walk[id] <= walk) return true;
+            }
+            return false;
+        }
+
+        boolean insert(LabelStore labels, int labelId) {
+            if (dominates(labels, labelId)) return false;
+
+            // Drop every label the new one dominates, compacting in place
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!labels.dominates(labelId, ids[i])) ids[kept++] = ids[i];
+            }
+            size = kept;
+
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = labelId;
+            return true;
+        }
+    }
+
+    /**
+     * Growable list of label ids
+     */
+    private static class LabelList {
+        int[] ids = new int[64];
+        int size = 0;
+
+        void add(int labelId) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = labelId;
+        }
+    }
+
+    /**
+     * The marked labels of each stop in one round, as a chain through their positions in the marked list
+     */
+    private static class MarkedStops {
+        // Indexed by stop index: first and last position of the stop's chain, -1 when it has none
+        final int[] head;
+        final int[] tail;
+        // Indexed by position in the marked list: next position of the same stop, -1 at the end of the chain
+        int[] next = new int[64];
+
+        MarkedStops(int stops) {
+            head = new int[stops];
+            tail = new int[stops];
+            Arrays.fill(head, -1);
+        }
+
+        void reset(int positions) {
+            if (next.length < positions) next = new int[Math.max(positions, next.length * 2)];
+        }
+
+        /**
+         * Appends the position to the stop's chain, so labels board in the order they were marked
+         */
+        void link(
+                int stop,
+                int position
+        ) {
+            next[position] = -1;
+            if (head[stop] < 0) head[stop] = position;
+            else next[tail[stop]] = position;
+            tail[stop] = position;
+        }
+
+        void clear(
+                LabelStore labels,
+                LabelList marked
+        ) {
+            for (int i = 0; i < marked.size; i++) head[labels.stop[marked.ids[i]]] = -1;
+        }
+    }
+
+    /**
+     * Column-oriented label storage, so a label costs a handful of ints instead of an object
+     */
+    private static class LabelStore {
+        int[] stop = new int[1024];
+        int[] arrival = new int[1024];
+        int[] boardings = new int[1024];
+        int[] walk = new int[1024];
+        int[] parent = new int[1024];
+        int[] legType = new int[1024];
+        int[] trip = new int[1024];
+        int[] departure = new int[1024];
+        int size = 0;
+
+        int add(int stopIndex, int arrivalMinute, int boardingCount, int walkMeters, int parentId, int leg, int tripRef, int departureMinute) {
+            if (size == arrival.length) grow();
+
+            stop[size] = stopIndex;
+            arrival[size] = arrivalMinute;
+            boardings[size] = boardingCount;
+            walk[size] = walkMeters;
+            parent[size] = parentId;
+            legType[size] = leg;
+            trip[size] = tripRef;
+            departure[size] = departureMinute;
+            return size++;
+        }
+
+        void discardLast() {
+            size--;
+        }
+
+        /**
+         * Weak Pareto dominance: no worse in all criteria. Ties keep the earlier label.
+         */
+        boolean dominates(int a, int b) {
+            return arrival[a] <= arrival[b] && boardings[a] <= boardings[b] && walk[a] <= walk[b];
+        }
+
+        private void grow() {
+            int capacity = arrival.length * 2;
+            stop = Arrays.copyOf(stop, capacity);
+            arrival = Arrays.copyOf(arrival, capacity);
+            boardings = Arrays.copyOf(boardings, capacity);
+            walk = Arrays.copyOf(walk, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            legType = Arrays.copyOf(legType, capacity);
+            trip = Arrays.copyOf(trip, capacity);
+            departure = Arrays.copyOf(departure, capacity);
+        }
+    }
+}
\ No newline at end of file
@@ -1,10 +1,22 @@
 package algo.transit.services;
 
+import algo.transit.models.common.PatternStop;
 import algo.transit.models.common.Route;
+import algo.transit.models.common.ServiceDays;
+import algo.transit.models.common.Station;
 import algo.transit.models.common.Stop;
+import algo.transit.models.common.TransitNetwork;
 import algo.transit.models.common.Trip;
+import algo.transit.models.common.TripPattern;
+import algo.transit.models.loader.AgencyFeed;
+import algo.transit.models.loader.LoadTimeline;
+import algo.transit.models.loader.StopTimesTable;
+import algo.transit.utils.ByteKeyIndex;
+import algo.transit.utils.Log;
+import algo.transit.utils.SymbolTable;
 import com.univocity.parsers.csv.CsvParser;
 import com.univocity.parsers.csv.CsvParserSettings;
+import lombok.Getter;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -12,40 +24,44 @@ import org.jetbrains.annotations.Nullable;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Serial;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
 
 public class CSVService {
-    public static final Path[] DefaultRoutesPaths = new Path[]{
-            Path.of("src", "main", "resources", "GTFS", "DELIJN", "routes.csv"),
-            Path.of("src", "main", "resources", "GTFS", "SNCB", "routes.csv"),
-            Path.of("src", "main", "resources", "GTFS", "TEC", "routes.csv"),
-            Path.of("src", "main", "resources", "GTFS", "STIB", "routes.csv")
-    };
-    public static final Path[] DefaultStopTimesPaths = new Path[]{
-            Path.of("src", "main", "resources", "GTFS", "DELIJN", "stop_times.csv"),
-            Path.of("src", "main", "resources", "GTFS", "SNCB", "stop_times.csv"),
-            Path.of("src", "main", "resources", "GTFS", "TEC", "stop_times.csv"),
-            Path.of("src", "main", "resources", "GTFS", "STIB", "stop_times.csv")
-    };
-    public static final Path[] DefaultStopsPaths = new Path[]{
-            Path.of("src", "main", "resources", "GTFS", "DELIJN", "stops.csv"),
-            Path.of("src", "main", "resources", "GTFS", "SNCB", "stops.csv"),
-            Path.of("src", "main", "resources", "GTFS", "TEC", "stops.csv"),
-            Path.of("src", "main", "resources", "GTFS", "STIB", "stops.csv")
-    };
-    public static final Path[] DefaultTripsPaths = new Path[]{
-            Path.of("src", "main", "resources", "GTFS", "DELIJN", "trips.csv"),
-            Path.of("src", "main", "resources", "GTFS", "SNCB", "trips.csv"),
-            Path.of("src", "main", "resources", "GTFS", "TEC", "trips.csv"),
-            Path.of("src", "main", "resources", "GTFS", "STIB", "trips.csv")
-    };
+    // Every directory under it holding the four required GTFS files is an agency
+    public static final Path DEFAULT_DATA_ROOT = Path.of("src", "main", "resources", "GTFS");
+    // Chunks smaller than this are not worth a separate task
+    private static final long MIN_CHUNK_BYTES = 8L * 1024 * 1024;
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    // Rough row sizes, used to presize the per-file maps
+    private static final int ESTIMATED_ROUTE_ROW_BYTES = 48;
+    private static final int ESTIMATED_STOP_ROW_BYTES = 48;
+    private static final int ESTIMATED_TRIP_ROW_BYTES = 24;
+
     public final Path[] routesPaths, stopTimesPaths, stopsPaths, tripsPaths;
+    @Getter
+    private final LoadTimeline timeline = new LoadTimeline();
+    @Getter
+    private final List<AgencyFeed> agencies = new ArrayList<>();
+    // Shared by every load of this service, so ids stay stable when agencies are added later
+    @Getter
+    private final SymbolTable stopSymbols = new SymbolTable();
+    @Getter
+    private final SymbolTable tripSymbols = new SymbolTable();
 
     public CSVService() {
-        this(DefaultRoutesPaths, DefaultStopTimesPaths, DefaultStopsPaths, DefaultTripsPaths);
+        this(AgencyFeed.discover(DEFAULT_DATA_ROOT));
     }
 
     public CSVService(
@@ -54,10 +70,48 @@ public class CSVService {
             Path[] stopsPaths,
             Path[] tripsPaths
     ) {
-        this.routesPaths = routesPaths;
-        this.stopTimesPaths = stopTimesPaths;
-        this.stopsPaths = stopsPaths;
-        this.tripsPaths = tripsPaths;
+        // The path arrays are parallel: index i of each one belongs to the same agency
+        this(IntStream.range(0, routesPaths.length)
+                .mapToObj(i -> new AgencyFeed(
+                        routesPaths[i].toAbsolutePath().getParent().getFileName().toString(),
+                        routesPaths[i],
+                        stopsPaths[i],
+                        tripsPaths[i],
+                        stopTimesPaths[i]
+                ))
+                .toList());
+    }
+
+    public CSVService(@NotNull List<AgencyFeed> feeds) {
+        agencies.addAll(feeds);
+        this.routesPaths = feeds.stream().map(AgencyFeed::routes).toArray(Path[]::new);
+        this.stopTimesPaths = feeds.stream().map(AgencyFeed::stopTimes).toArray(Path[]::new);
+        this.stopsPaths = feeds.stream().map(AgencyFeed::stops).toArray(Path[]::new);
+        this.tripsPaths = feeds.stream().map(AgencyFeed::trips).toArray(Path[]::new);
+    }
+
+    /**
+     * Service over the agencies found under the root, restricted to the given names unless that set is empty.
+     * Names are matched ignoring case; a requested agency that does not exist is an error.
+     */
+    public static @NotNull CSVService fromDirectory(
+            @NotNull Path root,
+            @NotNull Collection<String> names
+    ) {
+        List<AgencyFeed> found = AgencyFeed.discover(root);
+        if (names.isEmpty()) {
+            if (found.isEmpty()) throw new IllegalArgumentException("No GTFS agency found under " + root);
+            return new CSVService(found);
+        }
+
+        List<AgencyFeed> selected = new ArrayList<>();
+        for (String name : names) {
+            AgencyFeed feed = found.stream().filter(f -> f.name().equalsIgnoreCase(name)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown agency " + name + " under " + root + ", found "
+                            + found.stream().map(AgencyFeed::name).toList()));
+            if (!selected.contains(feed)) selected.add(feed);
+        }
+        return new CSVService(selected);
     }
 
     @Contract("_, _ -> new")
@@ -72,6 +126,32 @@ public class CSVService {
         }
     }
 
+    /**
+     * Positions of the named columns in the file's header line, -1 for those it lacks or when it cannot be read
+     */
+    public static int @NotNull [] headerColumns(
+            @NotNull Path filePath,
+            String @NotNull ... names
+    ) {
+        int[] positions = new int[names.length];
+        Arrays.fill(positions, -1);
+        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
+            String header = reader.readLine();
+            if (header == null) return positions;
+            String[] columns = header.split(",");
+            for (int i = 0; i < columns.length; i++) {
+                // The BOM and quotes some exporters add are not part of the name
+                String column = columns[i].replace("\uFEFF", "").replace("\"", "").trim();
+                for (int n = 0; n < names.length; n++) {
+                    if (positions[n] < 0 && names[n].equals(column)) positions[n] = i;
+                }
+            }
+        } catch (IOException e) {
+            Log.error("Error reading the header of %s: %s", filePath, e.getMessage());
+        }
+        return positions;
+    }
+
     public static LocalTime checkTime(@NotNull String time) {
         int hour = (time.charAt(0) - '0') * 10 + (time.charAt(1) - '0');
         int minute = (time.charAt(3) - '0') * 10 + (time.charAt(4) - '0');
@@ -84,140 +164,661 @@ public class CSVService {
         return LocalTime.of(hour, minute, second);
     }
 
-    public Map<String, Route> getRoutes() {
-        Map<String, Route> routes = new HashMap<>();
-
-        List<CompletableFuture<Void>> futures = Arrays.stream(routesPaths)
-                .map(path -> CompletableFuture.runAsync(() -> {
-                    try {
-                        System.out.println("Reading routes from " + path);
-                        for (Route route : readCSV(path, row -> new Route(row[0].intern(), row[1].intern(), row[2].intern(), row[3].intern()))) {
-                            synchronized (routes) {
-                                routes.put(route.getRouteId(), route);
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error reading routes from " + path + ": " + e.getMessage());
-                    }
-                }))
+    /**
+     * Loads and links every agency as a dependency pipeline instead of strict phases:
+     * an agency's trips only wait for its own routes, and its stop_times are linked as soon as
+     * its trips and the stops of all agencies are available.
+     */
+    public TransitNetwork loadNetwork() {
+        return loadAgencies(Map.of()).network();
+    }
+
+    /**
+     * Same pipeline as {@link #loadNetwork()}, for the agencies missing from reused only.
+     * Reused agencies enter the new network as they are, sharing their stops, routes and trips with the network
+     * they were loaded into; only their stops are indexed again, to the same ids.
+     * Fails with a {@link SharedStopsException} before linking anything if a loaded agency's stop_times
+     * reference stops of a reused one, since linking would then modify the other network as well.
+     */
+    @NotNull LoadResult loadAgencies(@NotNull Map<String, AgencyData> reused) {
+        Map<AgencyFeed, CompletableFuture<Map<String, Stop>>> stopFutures = new LinkedHashMap<>();
+        for (AgencyFeed agency : agencies) {
+            AgencyData kept = reused.get(agency.name());
+            stopFutures.put(agency, kept != null
+                    ? CompletableFuture.completedFuture(kept.stops())
+                    : CompletableFuture.supplyAsync(() -> timed(agency.name(), "stops", () -> readStops(agency))));
+        }
+
+        // stop_times may reference any agency's stops, so linking needs the complete stop index
+        CompletableFuture<StopIndex> stopIndexFuture = CompletableFuture
+                .allOf(stopFutures.values().toArray(CompletableFuture[]::new))
+                .thenApply(_ -> timed(LoadTimeline.ALL_AGENCIES, "stop index", () -> {
+                    Map<String, Stop> stops = merge(stopFutures.values().stream().map(CompletableFuture::join).toList());
+                    Log.info("Loaded %d stops", stops.size());
+                    return StopIndex.of(stops, stopSymbols);
+                }));
+        // Only reads the stops, so it runs alongside linking
+        CompletableFuture<Station[]> stationsFuture = stopIndexFuture.thenApplyAsync(stopIndex ->
+                timed(LoadTimeline.ALL_AGENCIES, "stations", () -> clusterStations(stopIndex)));
+
+        Map<String, CompletableFuture<AgencyData>> agencyFutures = new LinkedHashMap<>();
+        for (AgencyFeed agency : agencies) {
+            AgencyData kept = reused.get(agency.name());
+            if (kept != null) {
+                agencyFutures.put(agency.name(), CompletableFuture.completedFuture(kept));
+                continue;
+            }
+
+            CompletableFuture<Map<String, Route>> routesFuture = CompletableFuture.supplyAsync(() -> timed(agency.name(), "routes",
+                    () -> readMap(agency.routes(), "routes", ESTIMATED_ROUTE_ROW_BYTES, CSVService::toRoute, Route::getRouteId)));
+
+            // GTFS trips reference the routes of their own feed
+            CompletableFuture<Map<String, Trip>> tripsFuture = routesFuture.thenApplyAsync(routes -> timed(agency.name(), "trips",
+                    () -> readTrips(agency, routes)));
+
+            agencyFutures.put(agency.name(), tripsFuture
+                    .thenCombine(stopIndexFuture, (trips, stopIndex) -> new LinkInput(agency, trips, stopIndex))
+                    .thenCompose(this::parseAgencyStopTimes)
+                    .thenApply(input -> timed(agency.name(), "link", () -> {
+                        checkNotShared(agency, input, reused.keySet());
+                        int count = assignStopTimes(input.tables(), input.trips(), input.stopIndex().stops());
+                        linkRoutesToStops(input.tripMap());
+                        Log.info("Linked %d stop times for %s", count, agency.name());
+                        return new AgencyData(stopFutures.get(agency).join(), routesFuture.join(), input.tripMap());
+                    })));
+        }
+
+        Map<String, AgencyData> loaded = new LinkedHashMap<>();
+        agencyFutures.forEach((name, future) -> loaded.put(name, future.join()));
+        StopIndex stopIndex = stopIndexFuture.join();
+
+        Map<String, Route> routes = merge(loaded.values().stream().map(AgencyData::routes).toList());
+        Map<String, Trip> trips = merge(loaded.values().stream().map(AgencyData::trips).toList());
+
+        // Stop maps are filled once every agency is linked, partitioned by stop so no lock is needed.
+        // Stops of reused agencies are linked already.
+        timed(LoadTimeline.ALL_AGENCIES, "stop links", () -> {
+            Trip[] linked = loaded.entrySet().stream()
+                    .filter(entry -> !reused.containsKey(entry.getKey()))
+                    .flatMap(entry -> entry.getValue().trips().values().stream())
+                    .toArray(Trip[]::new);
+            linkStopsToTrips(linked, stopIndex.stops());
+            return null;
+        });
+
+        return new LoadResult(new TransitNetwork(routes, stopIndex.stopMap(), trips, stationsFuture.join()), loaded);
+    }
+
+    /**
+     * Throws when the parsed stop_times of the agency visit a stop owned by one of the given agencies
+     */
+    private static void checkNotShared(
+            @NotNull AgencyFeed agency,
+            @NotNull LinkedAgency input,
+            @NotNull Set<String> reused
+    ) {
+        if (reused.isEmpty()) return;
+
+        Set<String> shared = new TreeSet<>();
+        Stop[] stops = input.stopIndex().stops();
+        for (StopTimesTable table : input.tables()) {
+            for (int row = 0; row < table.size(); row++) {
+                String owner = stops[table.stop(row)].getAgency();
+                if (owner != null && !owner.equals(agency.name()) && reused.contains(owner)) shared.add(owner);
+            }
+        }
+        if (!shared.isEmpty()) throw new SharedStopsException(shared);
+    }
+
+    private @NotNull CompletableFuture<LinkedAgency> parseAgencyStopTimes(@NotNull LinkInput input) {
+        LoadTimeline.Phase phase = timeline.begin(input.agency().name(), "stop_times");
+        List<String> tripIds = new ArrayList<>(input.trips().keySet());
+        ByteKeyIndex tripIndex = new ByteKeyIndex(tripIds);
+        Trip[] tripsByIndex = tripIds.stream().map(input.trips()::get).toArray(Trip[]::new);
+
+        List<CompletableFuture<StopTimesTable>> chunks = parseStopTimesChunks(input.agency().stopTimes(), tripIndex, input.stopIndex().index());
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).thenApply(_ -> {
+            List<StopTimesTable> tables = chunks.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList();
+            phase.end();
+            return new LinkedAgency(tables, tripsByIndex, input.trips(), input.stopIndex());
+        });
+    }
+
+    /**
+     * Loads the stops of every agency eagerly, and returns a network whose timetable is loaded per agency,
+     * the first time a search reaches one of its stops or a query's bounding box covers it.
+     * Loaded agencies stay linked for the lifetime of the network.
+     */
+    public TransitNetwork loadLazyNetwork() {
+        List<CompletableFuture<Map<String, Stop>>> stopFutures = agencies.stream()
+                .map(agency -> CompletableFuture.supplyAsync(() -> timed(agency.name(), "stops", () -> readStops(agency))))
                 .toList();
 
-        futures.forEach(CompletableFuture::join);
-        System.out.println("Loaded " + routes.size() + " routes");
+        StopIndex stopIndex = timed(LoadTimeline.ALL_AGENCIES, "stop index",
+                () -> StopIndex.of(merge(stopFutures.stream().map(CompletableFuture::join).toList()), stopSymbols));
+        Log.info("Loaded %d stops, timetables load on demand", stopIndex.stops().length);
+        Station[] stations = timed(LoadTimeline.ALL_AGENCIES, "stations", () -> clusterStations(stopIndex));
+
+        Map<String, Route> routes = new ConcurrentHashMap<>();
+        Map<String, Trip> trips = new ConcurrentHashMap<>();
+        LazyAgencyLoader loader = new LazyAgencyLoader(this, stopIndex, routes, trips);
+        return new TransitNetwork(routes, stopIndex.stopMap(), trips, stations, loader);
+    }
+
+    private static Station @NotNull [] clusterStations(@NotNull StopIndex stopIndex) {
+        Station[] stations = StationService.cluster(stopIndex.stops());
+        Log.info("Clustered %d stops into %d stations", Arrays.stream(stations).filter(Objects::nonNull).count(),
+                Arrays.stream(stations).filter(Objects::nonNull).distinct().count());
+        return stations;
+    }
+
+    /**
+     * Loads one agency's routes, trips and stop_times on the calling thread and links them to the stops.
+     * Only the agency's own stop maps are replaced, so searches running meanwhile keep a consistent view.
+     */
+    AgencyData loadAgency(
+            @NotNull AgencyFeed agency,
+            @NotNull StopIndex stopIndex
+    ) {
+        Map<String, Route> routes = timed(agency.name(), "routes",
+                () -> readMap(agency.routes(), "routes", ESTIMATED_ROUTE_ROW_BYTES, CSVService::toRoute, Route::getRouteId));
+        Map<String, Trip> trips = timed(agency.name(), "trips",
+                () -> readTrips(agency, routes));
+
+        LinkedAgency linked = parseAgencyStopTimes(new LinkInput(agency, trips, stopIndex)).join();
+        return timed(agency.name(), "link", () -> {
+            int count = assignStopTimes(linked.tables(), linked.trips(), stopIndex.stops());
+            linkRoutesToStops(trips);
+            linkStopsToTrips(linked.trips(), stopIndex.stops());
+            Log.info("Linked %d stop times for %s", count, agency.name());
+            return new AgencyData(Map.of(), routes, trips);
+        });
+    }
+
+    private @NotNull Map<String, Trip> readTrips(
+            @NotNull AgencyFeed agency,
+            @NotNull Map<String, Route> routes
+    ) {
+        Map<String, ServiceDays> services = CalendarReader.read(agency);
+        int[] columns = tripColumns(agency);
+        Map<String, Trip> trips = readMap(agency.trips(), "trips", ESTIMATED_TRIP_ROW_BYTES,
+                row -> toTrip(row, columns, routes, services), Trip::getTripId);
+        for (Trip trip : trips.values()) trip.setIndex(tripSymbols.intern(trip.getTripId()));
+        return trips;
+    }
+
+    private static @NotNull Map<String, Stop> readStops(@NotNull AgencyFeed agency) {
+        Map<String, Stop> stops = readMap(agency.stops(), "stops", ESTIMATED_STOP_ROW_BYTES, CSVService::toStop, Stop::getStopId);
+        for (Stop stop : stops.values()) stop.setAgency(agency.name());
+        return stops;
+    }
+
+    private <T> T timed(
+            String agency,
+            String phase,
+            @NotNull Supplier<T> work
+    ) {
+        LoadTimeline.Phase timing = timeline.begin(agency, phase);
+        try {
+            return work.get();
+        } finally {
+            timing.end();
+        }
+    }
+
+    /**
+     * Positions of trip_id, route_id and service_id in the agency's trips.csv. Its column order is not the GTFS one,
+     * so they are looked up by name; a header naming neither of the first two is read as trip_id, route_id.
+     * Without a service_id column every trip runs every day.
+     */
+    private static int @NotNull [] tripColumns(@NotNull AgencyFeed agency) {
+        int[] columns = headerColumns(agency.trips(), "trip_id", "route_id", "service_id");
+        if (columns[0] < 0 && columns[1] < 0) {
+            Log.warn("No trip_id or route_id column in %s, reading the first two columns as those", agency.trips());
+            columns[0] = 0;
+            columns[1] = 1;
+        } else if (columns[0] < 0 || columns[1] < 0) {
+            throw new IllegalArgumentException("Missing " + (columns[0] < 0 ? "trip_id" : "route_id") + " column in " + agency.trips());
+        }
+        return columns;
+    }
+
+    /**
+     * Trip of a row, with columns as found by {@link #tripColumns}; trips of a service missing from the calendars run every day
+     */
+    private static @NotNull Trip toTrip(
+            String @NotNull [] row,
+            int @NotNull [] columns,
+            @NotNull Map<String, Route> routes,
+            @NotNull Map<String, ServiceDays> services
+    ) {
+        Trip trip = new Trip(row[columns[0]], routes.get(row[columns[1]]));
+        int service = columns[2];
+        if (service >= 0 && service < row.length && row[service] != null) trip.setService(services.get(row[service]));
+        return trip;
+    }
+
+    private static @NotNull Route toRoute(String @NotNull [] row) {
+        return new Route(row[0].intern(), row[1].intern(), row[2].intern(), row[3].intern());
+    }
+
+    private static @NotNull Stop toStop(String @NotNull [] row) {
+        return new Stop(row[0].intern(), row[1].intern(), Double.parseDouble(row[2]), Double.parseDouble(row[3]));
+    }
+
+    public Map<String, Route> getRoutes() {
+        LoadTimeline.Phase phase = timeline.begin("routes");
+        Map<String, Route> routes = loadAll(routesPaths, "routes", ESTIMATED_ROUTE_ROW_BYTES,
+                CSVService::toRoute, Route::getRouteId);
+        phase.end();
         return routes;
     }
 
     public Map<String, Stop> getStops() {
-        Map<String, Stop> stops = new HashMap<>();
-
-        List<CompletableFuture<Void>> futures = Arrays.stream(stopsPaths)
-                .map(path -> CompletableFuture.runAsync(() -> {
-                    try {
-                        System.out.println("Reading stops from " + path);
-                        for (Stop stop : readCSV(path, row -> new Stop(row[0].intern(), row[1].intern(), Double.parseDouble(row[2]), Double.parseDouble(row[3])))) {
-                            synchronized (stops) {
-                                stops.put(stop.getStopId(), stop);
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error reading stops from " + path + ": " + e.getMessage());
-                    }
-                }))
+        LoadTimeline.Phase phase = timeline.begin("stops");
+        Map<String, Stop> stops = loadAll(stopsPaths, "stops", ESTIMATED_STOP_ROW_BYTES,
+                CSVService::toStop, Stop::getStopId);
+        for (Stop stop : stops.values()) stop.setIndex(stopSymbols.intern(stop.getStopId()));
+        phase.end();
+        return stops;
+    }
+
+    /**
+     * Reads every file into its own presized map on a separate thread, then merges the maps in path order.
+     * No map is shared while reading, so the rows are never funneled through a lock.
+     */
+    private <T> @NotNull Map<String, T> loadAll(
+            Path @NotNull [] paths,
+            String name,
+            int estimatedRowBytes,
+            FromCSV<T> converter,
+            Function<T, String> key
+    ) {
+        List<CompletableFuture<Map<String, T>>> futures = Arrays.stream(paths)
+                .map(path -> CompletableFuture.supplyAsync(() -> readMap(path, name, estimatedRowBytes, converter, key)))
                 .toList();
 
-        futures.forEach(CompletableFuture::join);
-        System.out.println("Loaded " + stops.size() + " stops");
-        return stops;
+        Map<String, T> merged = merge(futures.stream().map(CompletableFuture::join).toList());
+        Log.info("Loaded %d %s", merged.size(), name);
+        return merged;
+    }
+
+    private static <T> @NotNull Map<String, T> readMap(
+            Path path,
+            String name,
+            int estimatedRowBytes,
+            FromCSV<T> converter,
+            Function<T, String> key
+    ) {
+        Map<String, T> local = HashMap.newHashMap(estimateRows(path, estimatedRowBytes));
+        try {
+            Log.info("Reading %s from %s", name, path);
+            for (T value : readCSV(path, converter)) local.put(key.apply(value), value);
+        } catch (Exception e) {
+            Log.error("Error reading %s from %s: %s", name, path, e.getMessage());
+        }
+        return local;
+    }
+
+    /**
+     * Merges maps into one allocated at its final size; later maps win on duplicate keys
+     */
+    private static <T> @NotNull Map<String, T> merge(@NotNull List<Map<String, T>> parts) {
+        Map<String, T> merged = HashMap.newHashMap(parts.stream().mapToInt(Map::size).sum());
+        parts.forEach(merged::putAll);
+        return merged;
+    }
+
+    private static int estimateRows(Path path, int estimatedRowBytes) {
+        try {
+            return (int) Math.min(Integer.MAX_VALUE / 2, Files.size(path) / estimatedRowBytes + 16);
+        } catch (IOException e) {
+            return 16;
+        }
     }
 
     public void linkData(
             Map<String, Stop> stops,
             Map<String, Trip> trips
     ) {
-        List<CompletableFuture<Integer>> futures = Arrays.stream(stopTimesPaths)
-                .map(path -> CompletableFuture.supplyAsync(() -> {
-                    int count = 0;
-                    try {
-                        System.out.println("Reading stop times from " + path);
-                        for (String[] row : readCSV(path, r -> r)) {
-                            if (row.length < 4) {
-                                System.err.println("Invalid stop time row: " + Arrays.toString(row));
-                                continue;
-                            }
-
-                            String tripId = row[0];
-                            String stopId = row[2];
-
-                            LocalTime departureTime;
-                            try {
-                                departureTime = checkTime(row[1]);
-                            } catch (Exception e) {
-                                System.err.println("Invalid time format in stop_times: " + row[1]);
-                                continue;
-                            }
-
-                            int stopSequence;
-                            try {
-                                stopSequence = Integer.parseInt(row[3]);
-                            } catch (NumberFormatException e) {
-                                System.err.println("Invalid stop sequence: " + row[3]);
-                                continue;
-                            }
-
-                            Stop stop = stops.get(stopId);
-                            Trip trip = trips.get(tripId);
-
-                            if (stop != null && trip != null) {
-                                synchronized (trip) {
-                                    trip.addStopTime(stopSequence, departureTime, stop);
-                                }
-                                synchronized (trip.getRoute()) {
-                                    trip.getRoute().getPossibleStops().add(stop);
-                                }
-                                synchronized (stop) {
-                                    stop.getRoutes().put(trip.getRoute().getRouteId(), trip.getRoute());
-                                    stop.getTrips().put(trip.getTripId(), trip);
-                                }
-                                count++;
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error reading stop times from " + path + ": " + e.getMessage());
-                    }
-                    return count;
-                }))
-                .toList();
+        LoadTimeline.Phase phase = timeline.begin("stop_times");
+        // Both files are resolved against dense indexes, so rows are decoded without creating Strings
+        List<String> tripIds = new ArrayList<>(trips.keySet());
+        ByteKeyIndex tripIndex = new ByteKeyIndex(tripIds);
+        StopIndex stopIndex = StopIndex.of(stops, stopSymbols);
+        Trip[] tripsByIndex = tripIds.stream().map(trips::get).toArray(Trip[]::new);
+        Stop[] stopsByIndex = stopIndex.stops();
+
+        // Every file is cut into newline-aligned byte ranges, so a large feed is parsed on all cores
+        List<CompletableFuture<StopTimesTable>> futures = new ArrayList<>();
+        for (Path path : stopTimesPaths) futures.addAll(parseStopTimesChunks(path, tripIndex, stopIndex.index()));
+
+        // Chunks are kept in file order, so "last row wins" still refers to the order in the feed
+        List<StopTimesTable> tables = futures.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList();
+        phase.end();
+
+        phase = timeline.begin("link");
+        int totalCount = assignStopTimes(tables, tripsByIndex, stopsByIndex);
+        linkStopsToTrips(tripsByIndex, stopsByIndex);
+        linkRoutesToStops(trips);
+        phase.end();
+        Log.info("Linked %d stop times", totalCount);
+    }
 
-        int totalCount = futures.stream().mapToInt(CompletableFuture::join).sum();
-        System.out.println("Linked " + totalCount + " stop times");
+    /**
+     * Starts one parsing task per newline-aligned byte range of the file; the futures are in file order
+     */
+    private static @NotNull List<CompletableFuture<StopTimesTable>> parseStopTimesChunks(
+            Path path,
+            ByteKeyIndex tripIndex,
+            ByteKeyIndex stopIndex
+    ) {
+        List<CompletableFuture<StopTimesTable>> futures = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Log.info("Reading stop times from %s", path);
+            long dataStart = new StopTimesParser(tripIndex, stopIndex).readHeader(channel);
+            long[] ranges = StopTimesParser.splitRanges(channel, dataStart, channel.size(), PARALLELISM * 2, MIN_CHUNK_BYTES);
+
+            for (int i = 0; i + 1 < ranges.length; i++) {
+                long from = ranges[i];
+                long to = ranges[i + 1];
+                futures.add(CompletableFuture.supplyAsync(() -> parseStopTimesRange(path, from, to, tripIndex, stopIndex)));
+            }
+        } catch (IOException e) {
+            Log.error("Error reading stop times from %s: %s", path, e.getMessage());
+        }
+        return futures;
     }
 
-    public Map<String, Trip> getTrips(Map<String, Route> routes) {
-        Map<String, Trip> trips = new HashMap<>();
-
-        List<CompletableFuture<Void>> futures = Arrays.stream(tripsPaths)
-                .map(path -> CompletableFuture.runAsync(() -> {
-                    try {
-                        System.out.println("Reading trips from " + path);
-                        for (Trip trip : readCSV(path, row -> {
-                            Route route = routes.get(row[1]);
-                            return new Trip(row[0], route);
-                        })) {
-                            synchronized (trips) {
-                                trips.put(trip.getTripId(), trip);
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error reading trips from " + path + ": " + e.getMessage());
-                    }
-                }))
-                .toList();
+    private static @Nullable StopTimesTable parseStopTimesRange(
+            Path path,
+            long from,
+            long to,
+            ByteKeyIndex tripIndex,
+            ByteKeyIndex stopIndex
+    ) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            StopTimesParser parser = new StopTimesParser(tripIndex, stopIndex);
+            parser.readHeader(channel);
+            StopTimesTable table = parser.parse(channel, from, to);
+            if (parser.getRejectedRows() > 0) {
+                Log.warn("Skipped %d invalid stop time rows in %s", parser.getRejectedRows(), path);
+            }
+            return table;
+        } catch (IOException e) {
+            Log.error("Error reading stop times from %s: %s", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Merges the parsed chunks per trip, orders each trip by stop_sequence and groups the trips into patterns.
+     * Trips are partitioned between workers, so no locking is needed. Returns the number of linked rows.
+     */
+    private static int assignStopTimes(
+            @NotNull List<StopTimesTable> tables,
+            Trip @NotNull [] trips,
+            Stop @NotNull [] stops
+    ) {
+        int[] tableOffset = new int[tables.size() + 1];
+        for (int c = 0; c < tables.size(); c++) tableOffset[c + 1] = tableOffset[c] + tables.get(c).size();
+
+        // Counting sort of all rows by trip
+        int[] tripStart = new int[trips.length + 1];
+        for (StopTimesTable table : tables) {
+            for (int row = 0; row < table.size(); row++) tripStart[table.trip(row) + 1]++;
+        }
+        for (int t = 0; t < trips.length; t++) tripStart[t + 1] += tripStart[t];
+
+        // Each key packs (stop_sequence, global row) so sorting a trip's range orders it by sequence, then by file position
+        long[] keys = new long[tableOffset[tables.size()]];
+        int[] cursor = Arrays.copyOf(tripStart, trips.length);
+        for (int c = 0; c < tables.size(); c++) {
+            StopTimesTable table = tables.get(c);
+            for (int row = 0; row < table.size(); row++) {
+                keys[cursor[table.trip(row)]++] = ((long) table.sequence(row) << 32) | (tableOffset[c] + row);
+            }
+        }
+
+        int[][] tripStops = new int[trips.length][];
+        int[][] tripTimes = new int[trips.length][];
+        runPartitioned(trips.length, (fromTrip, toTrip) -> {
+            for (int t = fromTrip; t < toTrip; t++) {
+                int from = tripStart[t];
+                int to = tripStart[t + 1];
+                if (from == to) continue;
+                Arrays.sort(keys, from, to);
+
+                // Duplicate sequences keep the row that appears last in the file
+                int unique = 0;
+                for (int k = from; k < to; k++) {
+                    if (k + 1 < to && (keys[k + 1] >>> 32) == (keys[k] >>> 32)) continue;
+                    keys[from + unique++] = keys[k];
+                }
+
+                tripStops[t] = new int[unique];
+                tripTimes[t] = new int[unique];
+                for (int k = 0; k < unique; k++) {
+                    int row = (int) keys[from + k];
+                    int c = chunkOf(tableOffset, row);
+                    StopTimesTable table = tables.get(c);
+                    tripStops[t][k] = table.stop(row - tableOffset[c]);
+                    tripTimes[t][k] = table.departure(row - tableOffset[c]);
+                }
+            }
+        });
+
+        PatternBuilder.build(trips, tripStops, tripTimes, stops);
+        return Arrays.stream(tripStops).filter(Objects::nonNull).mapToInt(sequence -> sequence.length).sum();
+    }
+
+    private static int chunkOf(int[] tableOffset, int row) {
+        int index = Arrays.binarySearch(tableOffset, row);
+        if (index >= 0) {
+            // Skip empty chunks sharing the same offset
+            while (index + 1 < tableOffset.length && tableOffset[index + 1] == row) index++;
+            return index;
+        }
+        return -index - 2;
+    }
+
+    /**
+     * Adds the trips to their stops' trip and route maps, and their patterns to the stops' pattern lists;
+     * every worker owns a disjoint range of stops.
+     * The maps are copied and swapped in rather than mutated, so a concurrent search keeps its view.
+     * The stops must be laid out by {@link Stop#getIndex()}, as in {@link StopIndex}.
+     */
+    private static void linkStopsToTrips(
+            Trip @NotNull [] trips,
+            Stop @NotNull [] stops
+    ) {
+        int[] stopStart = new int[stops.length + 1];
+        for (Trip trip : trips) {
+            if (trip.getRoute() == null) continue;
+            for (Stop stop : trip.getStops()) stopStart[stop.getIndex() + 1]++;
+        }
+        for (int s = 0; s < stops.length; s++) stopStart[s + 1] += stopStart[s];
+
+        int[] stopTrips = new int[stopStart[stops.length]];
+        int[] cursor = Arrays.copyOf(stopStart, stops.length);
+        for (int t = 0; t < trips.length; t++) {
+            if (trips[t].getRoute() == null) continue;
+            for (Stop stop : trips[t].getStops()) stopTrips[cursor[stop.getIndex()]++] = t;
+        }
+
+        Map<Integer, List<PatternStop>> stopPatterns = groupPatternsByStop(trips);
+
+        runPartitioned(stops.length, (fromStop, toStop) -> {
+            for (int s = fromStop; s < toStop; s++) {
+                if (stopStart[s] == stopStart[s + 1]) continue;
+
+                Stop stop = stops[s];
+                Map<String, Trip> stopTripMap = HashMap.newHashMap(stop.getTrips().size() + stopStart[s + 1] - stopStart[s]);
+                Map<String, Route> stopRouteMap = new HashMap<>(stop.getRoutes());
+                stopTripMap.putAll(stop.getTrips());
+
+                for (int k = stopStart[s]; k < stopStart[s + 1]; k++) {
+                    Trip trip = trips[stopTrips[k]];
+                    stopTripMap.put(trip.getTripId(), trip);
+                    stopRouteMap.put(trip.getRoute().getRouteId(), trip.getRoute());
+                }
+
+                stop.setTrips(stopTripMap);
+                stop.setRoutes(stopRouteMap);
+
+                List<PatternStop> added = stopPatterns.get(s);
+                if (added != null) {
+                    int modeMask = stop.getModeMask();
+                    for (PatternStop visit : added) modeMask |= visit.pattern().getModeMask();
+                    stop.setModeMask(modeMask);
+
+                    PatternStop[] patterns = Arrays.copyOf(stop.getPatterns(), stop.getPatterns().length + added.size());
+                    for (int k = 0; k < added.size(); k++) patterns[patterns.length - added.size() + k] = added.get(k);
+                    stop.setPatterns(patterns);
+                }
+            }
+        });
+    }
 
+    /**
+     * Every visit of the trips' patterns, keyed by stop index; each pattern is taken once, in first-seen order
+     */
+    private static @NotNull Map<Integer, List<PatternStop>> groupPatternsByStop(Trip @NotNull [] trips) {
+        Set<TripPattern> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Integer, List<PatternStop>> visits = new HashMap<>();
+        for (Trip trip : trips) {
+            TripPattern pattern = trip.getPattern();
+            if (pattern == null || pattern.getRoute() == null || !seen.add(pattern)) continue;
+            for (int position = 0; position < pattern.length(); position++) {
+                visits.computeIfAbsent(pattern.getStopIndexes()[position], _ -> new ArrayList<>())
+                        .add(new PatternStop(pattern, position));
+            }
+        }
+        return visits;
+    }
+
+    /**
+     * Fills each route's possible stops; every worker owns a disjoint set of routes
+     */
+    private static void linkRoutesToStops(@NotNull Map<String, Trip> trips) {
+        Map<Route, List<Trip>> tripsByRoute = new IdentityHashMap<>();
+        for (Trip trip : trips.values()) {
+            if (trip.getRoute() != null) tripsByRoute.computeIfAbsent(trip.getRoute(), _ -> new ArrayList<>()).add(trip);
+        }
+
+        List<Map.Entry<Route, List<Trip>>> entries = new ArrayList<>(tripsByRoute.entrySet());
+        runPartitioned(entries.size(), (from, to) -> {
+            for (int r = from; r < to; r++) {
+                Set<Stop> possibleStops = entries.get(r).getKey().getPossibleStops();
+                for (Trip trip : entries.get(r).getValue()) Collections.addAll(possibleStops, trip.getStops());
+            }
+        });
+    }
+
+    /**
+     * Runs the task over [0, size) split into disjoint ranges, one per CompletableFuture
+     */
+    private static void runPartitioned(int size, RangeTask task) {
+        int parts = Math.max(1, Math.min(PARALLELISM * 4, size / 256));
+        List<CompletableFuture<Void>> futures = new ArrayList<>(parts);
+        for (int p = 0; p < parts; p++) {
+            int from = (int) ((long) size * p / parts);
+            int to = (int) ((long) size * (p + 1) / parts);
+            futures.add(CompletableFuture.runAsync(() -> task.run(from, to)));
+        }
         futures.forEach(CompletableFuture::join);
-        System.out.println("Loaded " + trips.size() + " trips");
+    }
+
+    public Map<String, Trip> getTrips(Map<String, Route> routes) {
+        LoadTimeline.Phase phase = timeline.begin("trips");
+        // Read per agency, as service_ids only mean something within their own feed
+        List<CompletableFuture<Map<String, Trip>>> futures = agencies.stream()
+                .map(agency -> CompletableFuture.supplyAsync(() -> readTrips(agency, routes)))
+                .toList();
+        Map<String, Trip> trips = merge(futures.stream().map(CompletableFuture::join).toList());
+        Log.info("Loaded %d trips", trips.size());
+        phase.end();
         return trips;
     }
 
+    /**
+     * Stops laid out by their symbol id, so the byte index, the array and {@link Stop#getIndex()} all agree
+     */
+    record StopIndex(
+            Map<String, Stop> stopMap,
+            ByteKeyIndex index,
+            Stop[] stops
+    ) {
+        // Can never match a CSV field, which ends at the first newline
+        private static final String ABSENT_KEY = "\n";
+
+        static @NotNull StopIndex of(
+                @NotNull Map<String, Stop> stopMap,
+                @NotNull SymbolTable symbols
+        ) {
+            for (Stop stop : stopMap.values()) stop.setIndex(symbols.intern(stop.getStopId()));
+
+            // Ids interned by an earlier load may have no stop in this one
+            Stop[] stops = new Stop[symbols.size()];
+            List<String> keys = new ArrayList<>(stops.length);
+            for (int i = 0; i < stops.length; i++) {
+                stops[i] = stopMap.get(symbols.name(i));
+                keys.add(stops[i] == null ? ABSENT_KEY : symbols.name(i));
+            }
+            return new StopIndex(stopMap, new ByteKeyIndex(keys), stops);
+        }
+    }
+
+    private record LinkInput(
+            AgencyFeed agency,
+            Map<String, Trip> trips,
+            StopIndex stopIndex
+    ) {
+    }
+
+    private record LinkedAgency(
+            List<StopTimesTable> tables,
+            Trip[] trips,
+            Map<String, Trip> tripMap,
+            StopIndex stopIndex
+    ) {
+    }
+
+    /**
+     * What one agency contributes to a network. Lazily loaded agencies leave stops empty, as those are loaded up front.
+     */
+    record AgencyData(
+            Map<String, Stop> stops,
+            Map<String, Route> routes,
+            Map<String, Trip> trips
+    ) {
+    }
+
+    record LoadResult(
+            TransitNetwork network,
+            Map<String, AgencyData> agencies
+    ) {
+    }
+
+    /**
+     * A reloaded agency visits stops of agencies that were to be reused; they must be reloaded with it
+     */
+    static class SharedStopsException extends IllegalStateException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        @Getter
+        private final transient Set<String> agencies;
+
+        SharedStopsException(@NotNull Set<String> agencies) {
+            super("Stops shared with " + agencies);
+            this.agencies = agencies;
+        }
+    }
+
+    private interface RangeTask {
+        void run(int from, int to);
+    }
 
     public interface FromCSV<T> {
         T fromCSV(String[] row);
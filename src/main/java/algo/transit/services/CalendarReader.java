@@ -0,0 +1,214 @@
+package algo.transit.services;
+
+import algo.transit.models.common.ServiceDays;
+import algo.transit.models.loader.AgencyFeed;
+import algo.transit.utils.Log;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Reads an agency's calendar.csv and calendar_dates.csv into one {@link ServiceDays} per service_id.
+ * Both files are optional; their columns are found by the GTFS names in the header, and a header naming none of them
+ * is read in the standard order. Malformed rows are skipped and counted rather than failing the whole file.
+ */
+public class CalendarReader {
+    private static final DateTimeFormatter GTFS_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String EXCEPTION_ADDED = "1";
+    private static final String EXCEPTION_REMOVED = "2";
+    private static final String[] CALENDAR_COLUMNS = {
+            "service_id", "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday", "start_date", "end_date"
+    };
+    private static final String[] CALENDAR_DATES_COLUMNS = {"service_id", "date", "exception_type"};
+
+    private CalendarReader() {
+    }
+
+    /**
+     * Services of the agency by service_id; empty when the feed has no calendar files
+     */
+    public static @NotNull Map<String, ServiceDays> read(@NotNull AgencyFeed agency) {
+        Map<String, Builder> builders = new LinkedHashMap<>();
+        readCalendar(agency.calendar(), builders);
+        readCalendarDates(agency.calendarDates(), builders);
+
+        Map<String, ServiceDays> services = HashMap.newHashMap(builders.size());
+        for (Map.Entry<String, Builder> entry : builders.entrySet()) {
+            services.put(entry.getKey(), entry.getValue().build(entry.getKey()));
+        }
+        if (!services.isEmpty()) Log.info("Loaded %d services for %s", services.size(), agency.name());
+        return services;
+    }
+
+    private static void readCalendar(
+            Path path,
+            Map<String, Builder> builders
+    ) {
+        if (!Files.isRegularFile(path)) return;
+        int[] columns = columns(path, CALENDAR_COLUMNS);
+        if (columns == null) return;
+
+        int rejected = 0;
+        try {
+            for (String[] row : CSVService.readCSV(path, row -> row)) {
+                String serviceId = field(row, columns[0]);
+                LocalDate start = date(field(row, columns[8]));
+                LocalDate end = date(field(row, columns[9]));
+                boolean complete = serviceId != null && start != null && end != null;
+                int weekdays = 0;
+                // Columns 1 to 7 are monday to sunday, bit d is ISO day-of-week d
+                for (int weekday = 1; weekday <= 7; weekday++) {
+                    String runs = field(row, columns[weekday]);
+                    if (runs == null) complete = false;
+                    else if ("1".equals(runs)) weekdays |= 1 << weekday;
+                }
+                if (!complete) {
+                    rejected++;
+                    continue;
+                }
+
+                Builder builder = builders.computeIfAbsent(serviceId, _ -> new Builder());
+                builder.weekdays = weekdays;
+                builder.start = start;
+                builder.end = end;
+            }
+        } catch (RuntimeException e) {
+            Log.error("Error reading %s: %s", path, e.getMessage());
+        }
+        if (rejected > 0) Log.warn("Skipped %d invalid calendar rows in %s", rejected, path);
+    }
+
+    private static void readCalendarDates(
+            Path path,
+            Map<String, Builder> builders
+    ) {
+        if (!Files.isRegularFile(path)) return;
+        int[] columns = columns(path, CALENDAR_DATES_COLUMNS);
+        if (columns == null) return;
+
+        int rejected = 0;
+        try {
+            for (String[] row : CSVService.readCSV(path, row -> row)) {
+                String serviceId = field(row, columns[0]);
+                LocalDate date = date(field(row, columns[1]));
+                String type = field(row, columns[2]);
+                if (serviceId == null || date == null || type == null) {
+                    rejected++;
+                    continue;
+                }
+
+                long day = date.toEpochDay();
+                switch (type) {
+                    case EXCEPTION_ADDED -> builders.computeIfAbsent(serviceId, _ -> new Builder()).add(day);
+                    case EXCEPTION_REMOVED -> builders.computeIfAbsent(serviceId, _ -> new Builder()).remove(day);
+                    default -> rejected++;
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.error("Error reading %s: %s", path, e.getMessage());
+        }
+        if (rejected > 0) Log.warn("Skipped %d invalid calendar date rows in %s", rejected, path);
+    }
+
+    /**
+     * Positions of the named columns in the file's header, the standard order when it names none of them,
+     * or null when it lacks only some, as its rows could not be read reliably
+     */
+    private static int[] columns(
+            Path path,
+            String @NotNull ... names
+    ) {
+        int[] columns = CSVService.headerColumns(path, names);
+        if (Arrays.stream(columns).allMatch(column -> column < 0)) {
+            Log.warn("No GTFS column names in %s, reading the columns in the standard order", path);
+            for (int i = 0; i < columns.length; i++) columns[i] = i;
+            return columns;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] < 0) {
+                Log.error("Missing %s column in %s, ignoring the file", names[i], path);
+                return null;
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Trimmed value of the row's column, or null if the row is too short or the value blank
+     */
+    private static String field(
+            String @NotNull [] row,
+            int column
+    ) {
+        if (column >= row.length || row[column] == null) return null;
+        String value = row[column].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static LocalDate date(String value) {
+        if (value == null) return null;
+        try {
+            return LocalDate.parse(value, GTFS_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Weekly pattern and exceptions of one service, expanded into a bitset once both files are read
+     */
+    private static class Builder {
+        // Bit d is set when the service runs on ISO day-of-week d
+        int weekdays;
+        LocalDate start;
+        LocalDate end;
+        final Set<Long> added = new HashSet<>();
+        final Set<Long> removed = new HashSet<>();
+
+        void add(long day) {
+            added.add(day);
+            removed.remove(day);
+        }
+
+        void remove(long day) {
+            removed.add(day);
+            added.remove(day);
+        }
+
+        ServiceDays build(String serviceId) {
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            if (start != null && !start.isAfter(end)) {
+                first = start.toEpochDay();
+                last = end.toEpochDay();
+            }
+            for (long day : added) {
+                first = Math.min(first, day);
+                last = Math.max(last, day);
+            }
+            if (first > last) return new ServiceDays(serviceId, 0, new long[0]);
+
+            long[] days = new long[(int) ((last - first) / 64 + 1)];
+            if (start != null) {
+                for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+                    if ((weekdays & 1 << date.getDayOfWeek().getValue()) != 0) set(days, date.toEpochDay() - first);
+                }
+            }
+            for (long day : added) set(days, day - first);
+            for (long day : removed) {
+                long offset = day - first;
+                if (offset >= 0 && offset <= last - first) days[(int) (offset >>> 6)] &= ~(1L << offset);
+            }
+            return new ServiceDays(serviceId, first, days);
+        }
+
+        private static void set(long[] days, long offset) {
+            days[(int) (offset >>> 6)] |= 1L << offset;
+        }
+    }
+}
\ No newline at end of file
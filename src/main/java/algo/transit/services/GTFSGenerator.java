@@ -0,0 +1,281 @@
+package algo.transit.services;
+
+import algo.transit.models.loader.AgencyFeed;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Writes synthetic GTFS feeds (routes, stops, trips and stop_times) in the column layout CSVService reads.
+ * Output is deterministic for a given configuration, so feeds of 2x, 5x or 10x the network can be regenerated on demand.
+ * Routes are straight-ish lines through nearby stops, so walking transfers and multi-leg journeys occur as in real feeds.
+ */
+public class GTFSGenerator {
+    private static final String[] AGENCY_NAMES = {"DELIJN", "SNCB", "TEC", "STIB"};
+    private static final String[][] AGENCY_MODES = {{"BUS", "TRAM"}, {"TRAIN"}, {"BUS"}, {"METRO", "TRAM", "BUS"}};
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    // Same bounds as the pathfinders' spatial index
+    private static final double MIN_LATITUDE = 49.0;
+    private static final double MAX_LATITUDE = 52.0;
+    private static final double MIN_LONGITUDE = 2.0;
+    private static final double MAX_LONGITUDE = 7.0;
+
+    private final Config config;
+
+    public GTFSGenerator(@NotNull Config config) {
+        this.config = config;
+    }
+
+    public static @NotNull String agencyName(int agency) {
+        return agency < AGENCY_NAMES.length ? AGENCY_NAMES[agency] : "AGENCY" + agency;
+    }
+
+    public static @NotNull String stopId(String agency, int stop) {
+        return agency + "-" + stop;
+    }
+
+    public static @NotNull String routeId(String agency, int route) {
+        return agency + "-R" + route;
+    }
+
+    public static @NotNull String tripId(String agency, int route, int trip) {
+        return agency + "-T" + route + "-" + trip;
+    }
+
+    /**
+     * Usage: GTFSGenerator OUTPUT_DIR [SCALE]. Writes the default network multiplied by SCALE (default 1).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GTFSGenerator OUTPUT_DIR [SCALE]");
+            System.exit(1);
+        }
+
+        Config config = Config.defaults().scaled(args.length > 1 ? Double.parseDouble(args[1]) : 1.0);
+        List<AgencyFeed> feeds = new GTFSGenerator(config).write(Path.of(args[0]));
+        System.out.println("Wrote " + feeds.size() + " agencies to " + args[0] + ": " + config);
+    }
+
+    /**
+     * Writes one directory per agency under root and returns their feeds, ready for {@link CSVService#CSVService(List)}
+     */
+    public List<AgencyFeed> write(@NotNull Path root) throws IOException {
+        Random random = new Random(config.seed());
+        List<AgencyFeed> feeds = new ArrayList<>();
+        for (int a = 0; a < config.agencies(); a++) {
+            AgencyFeed feed = AgencyFeed.inDirectory(Files.createDirectories(root.resolve(agencyName(a))));
+            writeAgency(feed, AGENCY_MODES[a % AGENCY_MODES.length], random);
+            feeds.add(feed);
+        }
+        return feeds;
+    }
+
+    /**
+     * Fixed origin/destination pairs over the generated stops, for repeatable query benchmarks
+     */
+    public List<String[]> odPairs(int count) {
+        Random random = new Random(config.seed() ^ 0x5DEECE66DL);
+        List<String[]> pairs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pairs.add(new String[]{
+                    stopId(agencyName(random.nextInt(config.agencies())), random.nextInt(config.stopsPerAgency())),
+                    stopId(agencyName(random.nextInt(config.agencies())), random.nextInt(config.stopsPerAgency()))
+            });
+        }
+        return pairs;
+    }
+
+    private void writeAgency(
+            @NotNull AgencyFeed feed,
+            String[] modes,
+            Random random
+    ) throws IOException {
+        String agency = feed.name();
+        int stopCount = config.stopsPerAgency();
+        double latitudeSpread = config.spreadKm() * 1000 / METERS_PER_DEGREE;
+        double longitudeSpread = latitudeSpread / Math.cos(Math.toRadians(config.centerLatitude()));
+
+        double[] latitudes = new double[stopCount];
+        double[] longitudes = new double[stopCount];
+        try (BufferedWriter writer = Files.newBufferedWriter(feed.stops(), StandardCharsets.UTF_8)) {
+            writer.write("stop_id,stop_name,stop_lat,stop_lon\n");
+            for (int s = 0; s < stopCount; s++) {
+                latitudes[s] = clamp(config.centerLatitude() + (random.nextDouble() * 2 - 1) * latitudeSpread, MIN_LATITUDE, MAX_LATITUDE);
+                longitudes[s] = clamp(config.centerLongitude() + (random.nextDouble() * 2 - 1) * longitudeSpread, MIN_LONGITUDE, MAX_LONGITUDE);
+                writer.write(String.format(Locale.ROOT, "%s,\"%s Stop %d\",%.6f,%.6f\n",
+                        stopId(agency, s), agency, s, latitudes[s], longitudes[s]));
+            }
+        }
+
+        StopGrid grid = new StopGrid(latitudes, longitudes, config.stopSpacingMeters() / METERS_PER_DEGREE);
+
+        try (BufferedWriter routeWriter = Files.newBufferedWriter(feed.routes(), StandardCharsets.UTF_8);
+             BufferedWriter tripWriter = Files.newBufferedWriter(feed.trips(), StandardCharsets.UTF_8);
+             BufferedWriter timeWriter = Files.newBufferedWriter(feed.stopTimes(), StandardCharsets.UTF_8)) {
+            routeWriter.write("route_id,route_short_name,route_long_name,route_type\n");
+            tripWriter.write("trip_id,route_id\n");
+            timeWriter.write("trip_id,departure_time,stop_id,stop_sequence\n");
+
+            int serviceSeconds = config.serviceHours() * 3600;
+            int headwaySeconds = config.headwayMinutes() * 60;
+
+            for (int r = 0; r < config.routesPerAgency(); r++) {
+                String routeId = routeId(agency, r);
+                routeWriter.write(routeId + "," + r + ",\"Line " + r + "\"," + modes[random.nextInt(modes.length)] + "\n");
+                int[] route = grid.line(random, config.stopsPerRoute());
+
+                // Each route gets its own offset, so departures are not all aligned on the same minutes
+                int offset = random.nextInt(headwaySeconds);
+                for (int t = 0; offset + t * headwaySeconds < serviceSeconds; t++) {
+                    String tripId = tripId(agency, r, t);
+                    tripWriter.write(tripId + "," + routeId + "\n");
+
+                    int time = config.firstDepartureHour() * 3600 + offset + t * headwaySeconds;
+                    for (int k = 0; k < route.length; k++) {
+                        timeWriter.write(String.format(Locale.ROOT, "%s,%02d:%02d:%02d,%s,%d\n",
+                                tripId, time / 3600, time / 60 % 60, time % 60, stopId(agency, route[k]), k + 1));
+                        time += 60 + random.nextInt(120);
+                    }
+                }
+            }
+        }
+    }
+
+    @Contract(pure = true)
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Generation parameters. Spread is the half-width of the square the stops are scattered in.
+     */
+    public record Config(
+            int agencies,
+            int stopsPerAgency,
+            int routesPerAgency,
+            int stopsPerRoute,
+            int headwayMinutes,
+            int firstDepartureHour,
+            int serviceHours,
+            double centerLatitude,
+            double centerLongitude,
+            double spreadKm,
+            double stopSpacingMeters,
+            long seed
+    ) {
+        /**
+         * Roughly the size of the bundled STIB feed, four times, around Brussels
+         */
+        @Contract(" -> new")
+        public static @NotNull Config defaults() {
+            return new Config(4, 2000, 100, 20, 15, 5, 18, 50.85, 4.35, 30.0, 600.0, 42L);
+        }
+
+        /**
+         * Multiplies stops and routes by the factor and widens the area so stop density stays the same,
+         * as when neighbouring feeds are added to the network
+         */
+        public @NotNull Config scaled(double factor) {
+            return new Config(
+                    agencies,
+                    (int) Math.round(stopsPerAgency * factor),
+                    (int) Math.round(routesPerAgency * factor),
+                    stopsPerRoute,
+                    headwayMinutes,
+                    firstDepartureHour,
+                    serviceHours,
+                    centerLatitude,
+                    centerLongitude,
+                    spreadKm * Math.sqrt(factor),
+                    stopSpacingMeters,
+                    seed
+            );
+        }
+    }
+
+    /**
+     * Uniform grid over the generated stops, used to draw routes through neighbouring stops
+     */
+    private static class StopGrid {
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final double cellDegrees;
+        private final double minLatitude;
+        private final double minLongitude;
+        private final int rows;
+        private final int columns;
+        private final List<List<Integer>> cells;
+
+        StopGrid(double[] latitudes, double[] longitudes, double cellDegrees) {
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.cellDegrees = cellDegrees;
+            this.minLatitude = Arrays.stream(latitudes).min().orElse(0);
+            this.minLongitude = Arrays.stream(longitudes).min().orElse(0);
+            this.rows = cell(Arrays.stream(latitudes).max().orElse(0), minLatitude) + 1;
+            this.columns = cell(Arrays.stream(longitudes).max().orElse(0), minLongitude) + 1;
+
+            this.cells = new ArrayList<>(rows * columns);
+            for (int i = 0; i < rows * columns; i++) cells.add(new ArrayList<>(2));
+            for (int s = 0; s < latitudes.length; s++) {
+                cells.get(cell(latitudes[s], minLatitude) * columns + cell(longitudes[s], minLongitude)).add(s);
+            }
+        }
+
+        private int cell(double value, double min) {
+            return (int) ((value - min) / cellDegrees);
+        }
+
+        /**
+         * Starts at a random stop and steps one cell at a time in a random direction, taking the closest stop each step
+         */
+        int[] line(Random random, int length) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            int start = random.nextInt(latitudes.length);
+            double latitude = latitudes[start];
+            double longitude = longitudes[start];
+
+            LinkedHashSet<Integer> stops = new LinkedHashSet<>();
+            stops.add(start);
+            for (int step = 0; stops.size() < length && step < length * 3; step++) {
+                // Bend slightly, so lines are not perfectly straight
+                angle += (random.nextDouble() - 0.5) * 0.4;
+                latitude += Math.sin(angle) * cellDegrees;
+                longitude += Math.cos(angle) * cellDegrees;
+
+                int nearest = nearest(latitude, longitude);
+                if (nearest != -1) stops.add(nearest);
+            }
+            return stops.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private int nearest(double latitude, double longitude) {
+            int row = cell(latitude, minLatitude);
+            int column = cell(longitude, minLongitude);
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+
+            for (int r = row - 1; r <= row + 1; r++) {
+                for (int c = column - 1; c <= column + 1; c++) {
+                    if (r < 0 || c < 0 || r >= rows || c >= columns) continue;
+                    for (int s : cells.get(r * columns + c)) {
+                        double dLat = latitudes[s] - latitude;
+                        double dLon = longitudes[s] - longitude;
+                        double distance = dLat * dLat + dLon * dLon;
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = s;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,437 @@
+package algo.transit.services;
+
+import algo.transit.models.common.PatternStop;
+import algo.transit.models.common.Stop;
+import algo.transit.models.loader.AgencyFeed;
+import algo.transit.models.loader.FeedFingerprint;
+import algo.transit.models.pathfinder.HubLabels;
+import algo.transit.utils.Log;
+import algo.transit.utils.QuadTree;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Builds {@link HubLabels} offline with pruned landmark labeling, and reads and writes them as binary files.
+ * Stops are taken as hubs from the best connected down; each one runs a forward and a backward Dijkstra over the
+ * stop graph that stops wherever the labels built so far already give the right time, so labels stay small.
+ * The stop graph only depends on the scheduled patterns, so the labels stay valid with realtime delays and service dates,
+ * but must be rebuilt when the feeds change; the signature of the feeds is stored to detect that.
+ */
+public class HubLabelService {
+    // "BEHL" followed by a format version
+    public static final int BINARY_MAGIC = 0x4245484C;
+    public static final int BINARY_VERSION = 1;
+
+    private HubLabelService() {
+    }
+
+    /**
+     * Labels for every indexed stop, from their scheduled patterns and the walks allowed by the given limits.
+     * Every timetable must be loaded; lazily loaded stops would lose their rides.
+     */
+    public static @NotNull HubLabels build(
+            @NotNull Map<String, Stop> stops,
+            double walkingSpeed,
+            double maxWalkingTime,
+            long signature
+    ) {
+        long start = System.nanoTime();
+        StopGraph graph = StopGraph.of(stops, walkingSpeed, maxWalkingTime);
+        int n = graph.size();
+
+        // Hubs by decreasing degree: stops many rides and walks go through cover the most shortest paths
+        Integer[] order = new Integer[n];
+        for (int v = 0; v < n; v++) order[v] = v;
+        Arrays.sort(order, Comparator.comparingInt((Integer v) -> -graph.degree(v)).thenComparingInt(v -> v));
+
+        LabelBuilder out = new LabelBuilder(n);
+        LabelBuilder in = new LabelBuilder(n);
+        int[] distances = new int[n];
+        Arrays.fill(distances, HubLabels.UNREACHABLE);
+        int[] rootMinutes = new int[n];
+        Arrays.fill(rootMinutes, HubLabels.UNREACHABLE);
+
+        for (int rank = 0; rank < n; rank++) {
+            int root = order[rank];
+            if (!graph.contains(root)) continue;
+            // Forward from the root fills in labels, backward fills out labels
+            prunedSearch(graph, root, rank, true, out, in, distances, rootMinutes);
+            prunedSearch(graph, root, rank, false, in, out, distances, rootMinutes);
+        }
+
+        HubLabels labels = new HubLabels(signature, walkingSpeed, maxWalkingTime,
+                out.hubs(graph), out.minutes(graph), in.hubs(graph), in.minutes(graph));
+        Log.info("Built hub labels for %d stops in %.2f seconds, %.1f hubs per label",
+                graph.stopCount(), (System.nanoTime() - start) / 1e9, labels.averageLabelSize());
+        return labels;
+    }
+
+    /**
+     * Dijkstra from the root that adds it as a hub to the labels of every stop it reaches,
+     * except where the existing labels already give a time at least as good; the search does not continue past those.
+     * Going forward, rootLabels are the root's out labels and reached stops get in labels, and the reverse going backward.
+     */
+    private static void prunedSearch(
+            @NotNull StopGraph graph,
+            int root,
+            int rank,
+            boolean forward,
+            @NotNull LabelBuilder rootLabels,
+            @NotNull LabelBuilder reachedLabels,
+            int @NotNull [] distances,
+            int @NotNull [] rootMinutes
+    ) {
+        // The root's own label, by hub, so checking a reached stop costs one pass over its label
+        int rootSize = rootLabels.sizes[root];
+        for (int i = 0; i < rootSize; i++) rootMinutes[rootLabels.hubs[root][i]] = rootLabels.minutes[root][i];
+
+        List<Integer> touched = new ArrayList<>();
+        PriorityQueue<Entry> queue = new PriorityQueue<>();
+        distances[root] = 0;
+        touched.add(root);
+        queue.add(new Entry(root, 0));
+
+        while (!queue.isEmpty()) {
+            Entry current = queue.poll();
+            if (current.minutes > distances[current.stop]) continue;
+            if (reachedLabels.query(current.stop, rootMinutes) <= current.minutes) continue;
+            reachedLabels.add(current.stop, rank, current.minutes);
+
+            int[] targets = forward ? graph.outTargets[current.stop] : graph.inSources[current.stop];
+            int[] weights = forward ? graph.outMinutes[current.stop] : graph.inMinutes[current.stop];
+            for (int e = 0; e < targets.length; e++) {
+                int next = targets[e];
+                int minutes = current.minutes + weights[e];
+                if (minutes >= distances[next]) continue;
+                if (distances[next] == HubLabels.UNREACHABLE) touched.add(next);
+                distances[next] = minutes;
+                queue.add(new Entry(next, minutes));
+            }
+        }
+
+        for (int stop : touched) distances[stop] = HubLabels.UNREACHABLE;
+        for (int i = 0; i < rootSize; i++) rootMinutes[rootLabels.hubs[root][i]] = HubLabels.UNREACHABLE;
+    }
+
+    /**
+     * Identifies the content of the feeds, from the size and modification time of each of their files
+     */
+    public static long signature(@NotNull List<AgencyFeed> feeds) {
+        long hash = 0xcbf29ce484222325L;
+        for (AgencyFeed feed : feeds) {
+            hash = mix(hash, feed.name().hashCode());
+            for (FeedFingerprint.FileStamp stamp : FeedFingerprint.of(feed).files()) {
+                hash = mix(hash, stamp.path().getFileName().toString().hashCode());
+                hash = mix(hash, stamp.size());
+                hash = mix(hash, stamp.modifiedMillis());
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(
+            long hash,
+            long value
+    ) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * Format: magic, version, feed signature, walking speed and time limits, stop count, then per stop
+     * its ID and its out and in labels, each as a count followed by (hub, minutes) pairs
+     */
+    public static void write(
+            @NotNull HubLabels labels,
+            @NotNull Map<String, Stop> stops,
+            @NotNull Path path
+    ) throws IOException {
+        List<Stop> known = new ArrayList<>();
+        for (Stop stop : stops.values()) if (labels.knows(stop.getIndex())) known.add(stop);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 8192 * 8))) {
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+            out.writeLong(labels.getSignature());
+            out.writeDouble(labels.getWalkingSpeed());
+            out.writeDouble(labels.getMaxWalkingTime());
+            out.writeInt(known.size());
+            for (Stop stop : known) {
+                out.writeUTF(stop.getStopId());
+                writeLabel(out, labels.outHubs(stop.getIndex()), labels.outMinutes(stop.getIndex()));
+                writeLabel(out, labels.inHubs(stop.getIndex()), labels.inMinutes(stop.getIndex()));
+            }
+        }
+    }
+
+    /**
+     * Reads labels for the given stops, which must come from the same feeds; stops of the file that no longer exist are skipped
+     */
+    public static @NotNull HubLabels read(
+            @NotNull Path path,
+            @NotNull Map<String, Stop> stops,
+            long expectedSignature
+    ) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 8192 * 8))) {
+            if (in.readInt() != BINARY_MAGIC) throw new IOException("Not a hub label file: " + path);
+            int version = in.readInt();
+            if (version != BINARY_VERSION) throw new IOException("Unsupported hub label version " + version);
+
+            long signature = in.readLong();
+            if (signature != expectedSignature) throw new IOException("Hub labels were built from other feeds: " + path);
+            double walkingSpeed = in.readDouble();
+            double maxWalkingTime = in.readDouble();
+
+            int size = 0;
+            for (Stop stop : stops.values()) size = Math.max(size, stop.getIndex() + 1);
+            int[][] outHubs = new int[size][];
+            int[][] outMinutes = new int[size][];
+            int[][] inHubs = new int[size][];
+            int[][] inMinutes = new int[size][];
+
+            int count = in.readInt();
+            for (int s = 0; s < count; s++) {
+                Stop stop = stops.get(in.readUTF());
+                int[][] out = readLabel(in);
+                int[][] into = readLabel(in);
+                if (stop == null || stop.getIndex() < 0) continue;
+
+                outHubs[stop.getIndex()] = out[0];
+                outMinutes[stop.getIndex()] = out[1];
+                inHubs[stop.getIndex()] = into[0];
+                inMinutes[stop.getIndex()] = into[1];
+            }
+            return new HubLabels(signature, walkingSpeed, maxWalkingTime, outHubs, outMinutes, inHubs, inMinutes);
+        }
+    }
+
+    private static void writeLabel(
+            @NotNull DataOutputStream out,
+            int @NotNull [] hubs,
+            int @NotNull [] minutes
+    ) throws IOException {
+        out.writeInt(hubs.length);
+        for (int i = 0; i < hubs.length; i++) {
+            out.writeInt(hubs[i]);
+            out.writeInt(minutes[i]);
+        }
+    }
+
+    private static int @NotNull [][] readLabel(@NotNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        int[] hubs = new int[length];
+        int[] minutes = new int[length];
+        for (int i = 0; i < length; i++) {
+            hubs[i] = in.readInt();
+            minutes[i] = in.readInt();
+        }
+        return new int[][]{hubs, minutes};
+    }
+
+    /**
+     * Time-independent graph over stop indexes: the fastest hop of every pattern between consecutive stops,
+     * and every walk within the limits, timed as the searches time them
+     */
+    private static final class StopGraph {
+        final Stop[] stopsByIndex;
+        final int[][] outTargets;
+        final int[][] outMinutes;
+        final int[][] inSources;
+        final int[][] inMinutes;
+
+        private StopGraph(
+                Stop @NotNull [] stopsByIndex,
+                int @NotNull [][] outTargets,
+                int @NotNull [][] outMinutes,
+                int @NotNull [][] inSources,
+                int @NotNull [][] inMinutes
+        ) {
+            this.stopsByIndex = stopsByIndex;
+            this.outTargets = outTargets;
+            this.outMinutes = outMinutes;
+            this.inSources = inSources;
+            this.inMinutes = inMinutes;
+        }
+
+        static @NotNull StopGraph of(
+                @NotNull Map<String, Stop> stops,
+                double walkingSpeed,
+                double maxWalkingTime
+        ) {
+            int size = 0;
+            for (Stop stop : stops.values()) size = Math.max(size, stop.getIndex() + 1);
+            Stop[] stopsByIndex = new Stop[size];
+            for (Stop stop : stops.values()) if (stop.getIndex() >= 0) stopsByIndex[stop.getIndex()] = stop;
+
+            // Fastest time per edge, keyed by target stop
+            List<Map<Integer, Integer>> edges = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) edges.add(new HashMap<>());
+
+            for (Stop stop : stopsByIndex) {
+                if (stop == null) continue;
+                for (PatternStop visit : stop.getPatterns()) {
+                    int position = visit.position();
+                    if (position == visit.pattern().length() - 1) continue;
+                    int next = visit.pattern().getStopIndexes()[position + 1];
+                    edges.get(stop.getIndex()).merge(next, visit.pattern().minimumHopMinutes(position), Math::min);
+                }
+            }
+
+            QuadTree tree = spatialIndex(stopsByIndex);
+            double maxWalkingDistance = walkingSpeed * maxWalkingTime;
+            for (Stop stop : stopsByIndex) {
+                if (stop == null) continue;
+                for (Stop nearbyStop : tree.findNearby(stop.getLatitude(), stop.getLongitude(), maxWalkingDistance)) {
+                    if (nearbyStop == stop || nearbyStop.getIndex() < 0) continue;
+
+                    double distance = QuadTree.calculateDistance(
+                            stop.getLatitude(), stop.getLongitude(),
+                            nearbyStop.getLatitude(), nearbyStop.getLongitude()
+                    );
+                    int walkingTimeMinutes = (int) Math.ceil(distance / walkingSpeed);
+                    if (walkingTimeMinutes > maxWalkingTime) continue;
+
+                    // Very short walks take no time, see Connection#createWalkingConnection
+                    edges.get(stop.getIndex()).merge(nearbyStop.getIndex(), walkingTimeMinutes <= 1 ? 0 : walkingTimeMinutes, Math::min);
+                }
+            }
+
+            int[][] outTargets = new int[size][];
+            int[][] outMinutes = new int[size][];
+            int[] inDegrees = new int[size];
+            for (int from = 0; from < size; from++) {
+                Map<Integer, Integer> out = edges.get(from);
+                outTargets[from] = new int[out.size()];
+                outMinutes[from] = new int[out.size()];
+                int e = 0;
+                for (Map.Entry<Integer, Integer> edge : out.entrySet()) {
+                    outTargets[from][e] = edge.getKey();
+                    outMinutes[from][e++] = edge.getValue();
+                    inDegrees[edge.getKey()]++;
+                }
+            }
+
+            int[][] inSources = new int[size][];
+            int[][] inMinutes = new int[size][];
+            for (int to = 0; to < size; to++) {
+                inSources[to] = new int[inDegrees[to]];
+                inMinutes[to] = new int[inDegrees[to]];
+                inDegrees[to] = 0;
+            }
+            for (int from = 0; from < size; from++) {
+                for (int e = 0; e < outTargets[from].length; e++) {
+                    int to = outTargets[from][e];
+                    inSources[to][inDegrees[to]] = from;
+                    inMinutes[to][inDegrees[to]++] = outMinutes[from][e];
+                }
+            }
+            return new StopGraph(stopsByIndex, outTargets, outMinutes, inSources, inMinutes);
+        }
+
+        private static @NotNull QuadTree spatialIndex(Stop @NotNull [] stopsByIndex) {
+            double minLatitude = Double.POSITIVE_INFINITY, maxLatitude = Double.NEGATIVE_INFINITY;
+            double minLongitude = Double.POSITIVE_INFINITY, maxLongitude = Double.NEGATIVE_INFINITY;
+            for (Stop stop : stopsByIndex) {
+                if (stop == null) continue;
+                minLatitude = Math.min(minLatitude, stop.getLatitude());
+                maxLatitude = Math.max(maxLatitude, stop.getLatitude());
+                minLongitude = Math.min(minLongitude, stop.getLongitude());
+                maxLongitude = Math.max(maxLongitude, stop.getLongitude());
+            }
+
+            QuadTree tree = new QuadTree(minLongitude - 1, minLatitude - 1, maxLongitude + 1, maxLatitude + 1, 0);
+            for (Stop stop : stopsByIndex) if (stop != null) tree.insert(stop);
+            return tree;
+        }
+
+        int size() {
+            return stopsByIndex.length;
+        }
+
+        int stopCount() {
+            int count = 0;
+            for (Stop stop : stopsByIndex) if (stop != null) count++;
+            return count;
+        }
+
+        boolean contains(int stop) {
+            return stopsByIndex[stop] != null;
+        }
+
+        int degree(int stop) {
+            return outTargets[stop].length + inSources[stop].length;
+        }
+    }
+
+    /**
+     * Labels under construction, one growable (hub, minutes) array pair per stop; hubs are appended in rank order
+     */
+    private static final class LabelBuilder {
+        final int[][] hubs;
+        final int[][] minutes;
+        final int[] sizes;
+
+        LabelBuilder(int size) {
+            hubs = new int[size][4];
+            minutes = new int[size][4];
+            sizes = new int[size];
+        }
+
+        void add(
+                int stop,
+                int hub,
+                int hubMinutes
+        ) {
+            if (sizes[stop] == hubs[stop].length) {
+                hubs[stop] = Arrays.copyOf(hubs[stop], sizes[stop] * 2);
+                minutes[stop] = Arrays.copyOf(minutes[stop], sizes[stop] * 2);
+            }
+            hubs[stop][sizes[stop]] = hub;
+            minutes[stop][sizes[stop]++] = hubMinutes;
+        }
+
+        /**
+         * Best time through the stop's hubs, given the other end's minutes per hub
+         */
+        long query(
+                int stop,
+                int @NotNull [] otherMinutes
+        ) {
+            long best = HubLabels.UNREACHABLE;
+            for (int i = 0; i < sizes[stop]; i++) {
+                int other = otherMinutes[hubs[stop][i]];
+                if (other != HubLabels.UNREACHABLE) best = Math.min(best, (long) other + minutes[stop][i]);
+            }
+            return best;
+        }
+
+        int[][] hubs(@NotNull StopGraph graph) {
+            int[][] result = new int[sizes.length][];
+            for (int stop = 0; stop < sizes.length; stop++) {
+                if (graph.contains(stop)) result[stop] = Arrays.copyOf(hubs[stop], sizes[stop]);
+            }
+            return result;
+        }
+
+        int[][] minutes(@NotNull StopGraph graph) {
+            int[][] result = new int[sizes.length][];
+            for (int stop = 0; stop < sizes.length; stop++) {
+                if (graph.contains(stop)) result[stop] = Arrays.copyOf(minutes[stop], sizes[stop]);
+            }
+            return result;
+        }
+    }
+
+    private record Entry(
+            int stop,
+            int minutes
+    ) implements Comparable<Entry> {
+        @Override
+        public int compareTo(@NotNull Entry other) {
+            return Integer.compare(minutes, other.minutes);
+        }
+    }
+}
\ No newline at end of file
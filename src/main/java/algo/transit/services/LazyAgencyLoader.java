@@ -0,0 +1,130 @@
+package algo.transit.services;
+
+import algo.transit.models.common.Route;
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.Trip;
+import algo.transit.models.loader.AgencyFeed;
+import algo.transit.models.loader.AgencyLoader;
+import algo.transit.utils.Log;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads each agency's routes, trips and stop_times the first time it is needed.
+ * Stops are known up front, so every agency gets a coarse grid of the cells its stops cover,
+ * which lets a query load the agencies around its endpoints before the search starts.
+ */
+public class LazyAgencyLoader implements AgencyLoader {
+    // Same bounds as the pathfinders' spatial index, in cells of roughly 2 km
+    private static final double MIN_LATITUDE = 49.0;
+    private static final double MIN_LONGITUDE = 2.0;
+    private static final double CELL_DEGREES = 0.02;
+    private static final int ROWS = 150;
+    private static final int COLUMNS = 250;
+
+    private final CSVService csvService;
+    private final CSVService.StopIndex stopIndex;
+    private final Map<String, Route> routes;
+    private final Map<String, Trip> trips;
+
+    private final Map<String, AgencyFeed> feeds = new LinkedHashMap<>();
+    private final Map<String, BitSet> coverage = new HashMap<>();
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    LazyAgencyLoader(
+            @NotNull CSVService csvService,
+            @NotNull CSVService.StopIndex stopIndex,
+            Map<String, Route> routes,
+            Map<String, Trip> trips
+    ) {
+        this.csvService = csvService;
+        this.stopIndex = stopIndex;
+        this.routes = routes;
+        this.trips = trips;
+
+        for (AgencyFeed feed : csvService.getAgencies()) feeds.put(feed.name(), feed);
+        for (Stop stop : stopIndex.stops()) {
+            if (stop.getAgency() == null) continue;
+            coverage.computeIfAbsent(stop.getAgency(), _ -> new BitSet(ROWS * COLUMNS))
+                    .set(cell(row(stop.getLatitude()), column(stop.getLongitude())));
+        }
+    }
+
+    private static int row(double latitude) {
+        return Math.clamp((int) Math.floor((latitude - MIN_LATITUDE) / CELL_DEGREES), 0, ROWS - 1);
+    }
+
+    private static int column(double longitude) {
+        return Math.clamp((int) Math.floor((longitude - MIN_LONGITUDE) / CELL_DEGREES), 0, COLUMNS - 1);
+    }
+
+    private static int cell(int row, int column) {
+        return row * COLUMNS + column;
+    }
+
+    public boolean isLoaded(String agency) {
+        return loaded.contains(agency);
+    }
+
+    public Set<String> getLoadedAgencies() {
+        return Collections.unmodifiableSet(loaded);
+    }
+
+    @Override
+    public void ensureLoaded(Stop stop) {
+        // Fast path without locking once the agency is in
+        if (stop == null || stop.getAgency() == null || loaded.contains(stop.getAgency())) return;
+        load(stop.getAgency());
+    }
+
+    @Override
+    public void preload(
+            double minLat,
+            double minLon,
+            double maxLat,
+            double maxLon
+    ) {
+        int fromRow = row(minLat), toRow = row(maxLat);
+        int fromColumn = column(minLon), toColumn = column(maxLon);
+
+        for (Map.Entry<String, BitSet> entry : coverage.entrySet()) {
+            if (loaded.contains(entry.getKey())) continue;
+            if (covers(entry.getValue(), fromRow, toRow, fromColumn, toColumn)) load(entry.getKey());
+        }
+    }
+
+    private static boolean covers(
+            BitSet cells,
+            int fromRow,
+            int toRow,
+            int fromColumn,
+            int toColumn
+    ) {
+        for (int r = fromRow; r <= toRow; r++) {
+            int next = cells.nextSetBit(cell(r, fromColumn));
+            if (next != -1 && next <= cell(r, toColumn)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads the agency once; concurrent callers wait for the first one to finish
+     */
+    private synchronized void load(String agency) {
+        if (loaded.contains(agency)) return;
+
+        AgencyFeed feed = feeds.get(agency);
+        if (feed == null) {
+            loaded.add(agency);
+            return;
+        }
+
+        Log.info("Loading timetable of %s on demand", agency);
+        CSVService.AgencyData data = csvService.loadAgency(feed, stopIndex);
+        routes.putAll(data.routes());
+        trips.putAll(data.trips());
+        loaded.add(agency);
+    }
+}
\ No newline at end of file
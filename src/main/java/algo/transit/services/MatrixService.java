@@ -0,0 +1,203 @@
+package algo.transit.services;
+
+import algo.transit.models.common.Station;
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.Timetable;
+import algo.transit.models.loader.AgencyLoader;
+import algo.transit.models.pathfinder.HubLabels;
+import algo.transit.models.pathfinder.PathfinderMetrics;
+import algo.transit.models.pathfinder.TPreference;
+import algo.transit.models.pathfinder.TravelTimeMatrix;
+import algo.transit.pathfinders.MatrixPathfinder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Builds many-to-many travel-time matrices by running one one-to-all search per origin in parallel.
+ * The timetable and spatial index are shared read-only between all workers.
+ */
+public class MatrixService {
+    // "BETM" followed by a format version
+    public static final int BINARY_MAGIC = 0x4245544D;
+    public static final int BINARY_VERSION = 1;
+
+    private final Map<String, Stop> stops;
+    private final MatrixPathfinder pathfinder;
+    private final int threads;
+
+    public MatrixService(Map<String, Stop> stops) {
+        this(stops, Runtime.getRuntime().availableProcessors());
+    }
+
+    public MatrixService(
+            Map<String, Stop> stops,
+            int threads
+    ) {
+        this.stops = stops;
+        this.pathfinder = new MatrixPathfinder(stops);
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Latency percentiles and counters over every origin searched by this service
+     */
+    public PathfinderMetrics getMetrics() {
+        return pathfinder.getMetrics();
+    }
+
+    public void setAgencyLoader(@NotNull AgencyLoader agencyLoader) {
+        pathfinder.setAgencyLoader(agencyLoader);
+    }
+
+    public void setTimetableSource(@NotNull Supplier<Timetable> timetableSource) {
+        pathfinder.setTimetableSource(timetableSource);
+    }
+
+    public void setHubLabels(HubLabels hubLabels) {
+        pathfinder.setHubLabels(hubLabels);
+    }
+
+    public void setStations(Station @NotNull [] stations) {
+        pathfinder.setStations(stations);
+    }
+
+    /**
+     * Reads stop IDs either from a file (one per line) or from a comma-separated list
+     */
+    public static @NotNull List<String> parseStopIds(@NotNull String spec) throws IOException {
+        Path path = Path.of(spec);
+        List<String> ids = new ArrayList<>();
+        if (Files.isRegularFile(path)) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String id = line.trim();
+                if (!id.isEmpty() && !id.startsWith("#")) ids.add(id);
+            }
+        } else {
+            for (String id : spec.split(",")) {
+                if (!id.isBlank()) ids.add(id.trim());
+            }
+        }
+        return ids;
+    }
+
+    public TravelTimeMatrix computeMatrix(
+            @NotNull List<String> origins,
+            @NotNull List<String> destinations,
+            LocalTime startTime,
+            TPreference preferences,
+            int maxTravelMinutes,
+            ProgressListener progress
+    ) {
+        TravelTimeMatrix matrix = TravelTimeMatrix.empty(origins, destinations);
+        Stop[] destinationStops = destinations.stream().map(stops::get).toArray(Stop[]::new);
+
+        AtomicInteger completed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(origins.size());
+            for (int o = 0; o < origins.size(); o++) {
+                final int originIndex = o;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    int[] arrivals = pathfinder.travelTimesFrom(
+                            origins.get(originIndex), startTime, preferences, maxTravelMinutes);
+
+                    // Each worker owns a distinct row, so no synchronisation is needed
+                    for (int d = 0; d < destinationStops.length; d++) {
+                        if (destinationStops[d] == null) continue;
+                        int minutes = arrivals[destinationStops[d].getIndex()];
+                        if (minutes != MatrixPathfinder.UNREACHABLE) matrix.set(originIndex, d, minutes);
+                    }
+
+                    int done = completed.incrementAndGet();
+                    if (progress != null) progress.onProgress(done, origins.size());
+                }, executor));
+            }
+            futures.forEach(CompletableFuture::join);
+        } finally {
+            executor.shutdown();
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Writes the matrix as origin,destination,minutes rows; unreachable pairs are omitted
+     */
+    public static void writeCSV(
+            @NotNull TravelTimeMatrix matrix,
+            @NotNull Path path
+    ) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("origin,destination,minutes");
+            writer.newLine();
+            for (int o = 0; o < matrix.origins().size(); o++) {
+                for (int d = 0; d < matrix.destinations().size(); d++) {
+                    int minutes = matrix.get(o, d);
+                    if (minutes == TravelTimeMatrix.UNREACHABLE) continue;
+                    writer.write(matrix.origins().get(o) + "," + matrix.destinations().get(d) + "," + minutes);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Binary layout (big-endian): magic, version, origin count, destination count,
+     * origin IDs and destination IDs as UTF strings, then one unsigned short per cell
+     * in row-major order where 0xFFFF marks an unreachable destination.
+     */
+    public static void writeBinary(
+            @NotNull TravelTimeMatrix matrix,
+            @NotNull Path path
+    ) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 8192 * 8))) {
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+            out.writeInt(matrix.origins().size());
+            out.writeInt(matrix.destinations().size());
+            for (String id : matrix.origins()) out.writeUTF(id);
+            for (String id : matrix.destinations()) out.writeUTF(id);
+            for (int minutes : matrix.minutes()) {
+                out.writeShort(minutes == TravelTimeMatrix.UNREACHABLE ? 0xFFFF : Math.min(minutes, 0xFFFE));
+            }
+        }
+    }
+
+    public static @NotNull TravelTimeMatrix readBinary(@NotNull Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 8192 * 8))) {
+            if (in.readInt() != BINARY_MAGIC) throw new IOException("Not a travel-time matrix file: " + path);
+            int version = in.readInt();
+            if (version != BINARY_VERSION) throw new IOException("Unsupported matrix version " + version);
+
+            String[] origins = new String[in.readInt()];
+            String[] destinations = new String[in.readInt()];
+            for (int i = 0; i < origins.length; i++) origins[i] = in.readUTF();
+            for (int i = 0; i < destinations.length; i++) destinations[i] = in.readUTF();
+
+            int[] minutes = new int[origins.length * destinations.length];
+            for (int i = 0; i < minutes.length; i++) {
+                int value = in.readUnsignedShort();
+                minutes[i] = value == 0xFFFF ? TravelTimeMatrix.UNREACHABLE : value;
+            }
+            return new TravelTimeMatrix(Arrays.asList(origins), Arrays.asList(destinations), minutes);
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(int completed, int total);
+    }
+}
\ No newline at end of file
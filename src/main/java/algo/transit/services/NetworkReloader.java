@@ -0,0 +1,160 @@
+package algo.transit.services;
+
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.TransitNetwork;
+import algo.transit.models.common.Trip;
+import algo.transit.models.common.TripPattern;
+import algo.transit.models.loader.AgencyFeed;
+import algo.transit.models.loader.FeedFingerprint;
+import algo.transit.utils.Log;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a fully loaded network up to date with its feeds without restarting the process.
+ * A reload fingerprints the files of every agency and rebuilds, in the background, only the agencies whose files changed;
+ * the others move into the new network as they are. The new network is published atomically once it is complete,
+ * so searches keep running on the previous one meanwhile, and the extra memory is about one copy of the changed agencies.
+ * Pathfinders are bound to the stops and stations of one network, so callers create new ones when {@link #current()} changes.
+ * Stops moved over are never modified: whatever a network derives from them, such as its stations, it keeps itself.
+ */
+public class NetworkReloader {
+    private final CSVService csvService;
+    private final AtomicReference<TransitNetwork> current = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+
+    // Contents and fingerprints of the agencies in the current network, only used under reloadLock
+    private Map<String, CSVService.AgencyData> agencies;
+    private Map<String, FeedFingerprint> fingerprints;
+    private CompletableFuture<TransitNetwork> pending = CompletableFuture.completedFuture(null);
+
+    /**
+     * Loads every agency of the service on the calling thread
+     */
+    public NetworkReloader(@NotNull CSVService csvService) {
+        this.csvService = csvService;
+        synchronized (reloadLock) {
+            Map<String, FeedFingerprint> latest = fingerprint();
+            publish(csvService.loadAgencies(Map.of()), latest);
+        }
+    }
+
+    public @NotNull TransitNetwork current() {
+        return current.get();
+    }
+
+    /**
+     * Contents of the agencies in the current network, by agency name
+     */
+    @NotNull Map<String, CSVService.AgencyData> agencies() {
+        synchronized (reloadLock) {
+            return Collections.unmodifiableMap(agencies);
+        }
+    }
+
+    /**
+     * Starts a reload on another thread, or returns the one still running
+     */
+    public synchronized @NotNull CompletableFuture<TransitNetwork> reloadAsync() {
+        if (pending.isDone()) pending = CompletableFuture.supplyAsync(this::reload);
+        return pending;
+    }
+
+    /**
+     * Reloads the agencies whose files changed since the last load and publishes the result.
+     * Returns the current network unchanged when no file changed or the reload failed.
+     */
+    public @NotNull TransitNetwork reload() {
+        synchronized (reloadLock) {
+            Map<String, FeedFingerprint> latest = fingerprint();
+            Set<String> changed = new TreeSet<>();
+            latest.forEach((agency, fingerprint) -> {
+                if (!fingerprint.equals(fingerprints.get(agency))) changed.add(agency);
+            });
+            if (changed.isEmpty()) {
+                Log.debug("No feed changed since the last load");
+                return current.get();
+            }
+
+            long start = System.nanoTime();
+            addSharingAgencies(changed);
+            while (true) {
+                Map<String, CSVService.AgencyData> reused = new LinkedHashMap<>(agencies);
+                reused.keySet().removeAll(changed);
+                Log.info("Reloading %s, reusing %s", changed, reused.keySet());
+
+                try {
+                    publish(csvService.loadAgencies(reused), latest);
+                    Log.info("Reloaded network in %.2f seconds", (System.nanoTime() - start) / 1e9);
+                    return current.get();
+                } catch (CompletionException e) {
+                    if (!(e.getCause() instanceof CSVService.SharedStopsException shared)) {
+                        Log.error("Reload failed, keeping the current network", e.getCause());
+                        return current.get();
+                    }
+                    // The new feeds visit stops of agencies that were to be reused, so those are reloaded too
+                    changed.addAll(shared.getAgencies());
+                }
+            }
+        }
+    }
+
+    private void publish(
+            @NotNull CSVService.LoadResult result,
+            @NotNull Map<String, FeedFingerprint> latest
+    ) {
+        agencies = result.agencies();
+        fingerprints = latest;
+        current.set(result.network());
+    }
+
+    private @NotNull Map<String, FeedFingerprint> fingerprint() {
+        Map<String, FeedFingerprint> result = new LinkedHashMap<>();
+        for (AgencyFeed feed : csvService.getAgencies()) result.put(feed.name(), FeedFingerprint.of(feed));
+        return result;
+    }
+
+    /**
+     * Adds every agency that shares stops with a changed one, in either direction, until none is left.
+     * Their stops hold patterns of the other agency, which would otherwise go stale.
+     */
+    private void addSharingAgencies(@NotNull Set<String> changed) {
+        Map<String, Set<String>> visited = new HashMap<>();
+        agencies.forEach((agency, data) -> visited.put(agency, visitedAgencies(agency, data)));
+
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (Map.Entry<String, Set<String>> entry : visited.entrySet()) {
+                boolean isChanged = changed.contains(entry.getKey());
+                if (isChanged) {
+                    grown |= changed.addAll(entry.getValue());
+                } else if (!Collections.disjoint(entry.getValue(), changed)) {
+                    grown |= changed.add(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Other agencies whose stops the agency's patterns visit
+     */
+    private static @NotNull Set<String> visitedAgencies(
+            @NotNull String agency,
+            @NotNull CSVService.AgencyData data
+    ) {
+        Set<String> visited = new HashSet<>();
+        Set<TripPattern> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Trip trip : data.trips().values()) {
+            if (trip.getPattern() == null || !seen.add(trip.getPattern())) continue;
+            for (Stop stop : trip.getPattern().getStops()) {
+                if (stop.getAgency() != null && !stop.getAgency().equals(agency)) visited.add(stop.getAgency());
+            }
+        }
+        return visited;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+package algo.transit.services;
+
+import algo.transit.models.common.Route;
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.Trip;
+import algo.transit.models.common.TripPattern;
+import algo.transit.models.common.TripUpdate;
+import algo.transit.utils.Log;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Groups trips into {@link TripPattern}s: same route, same stop sequence.
+ * A group is split further wherever a trip would overtake an earlier one, so every pattern stays first-in first-out.
+ */
+public class PatternBuilder {
+    private PatternBuilder() {
+    }
+
+    /**
+     * Builds the patterns of the given trips and attaches every trip to its pattern.
+     * tripStops and tripTimes hold, per trip, the stop indexes and GTFS seconds ordered by stop_sequence,
+     * or null for a trip without stop times.
+     */
+    public static @NotNull List<TripPattern> build(
+            Trip @NotNull [] trips,
+            int @NotNull [][] tripStops,
+            int @NotNull [][] tripTimes,
+            Stop @NotNull [] stops
+    ) {
+        Map<SequenceKey, List<Integer>> groups = new LinkedHashMap<>();
+        for (int t = 0; t < trips.length; t++) {
+            if (tripStops[t] == null) continue;
+            groups.computeIfAbsent(new SequenceKey(trips[t].getRoute(), tripStops[t]), _ -> new ArrayList<>()).add(t);
+        }
+
+        List<TripPattern> patterns = new ArrayList<>();
+        for (Map.Entry<SequenceKey, List<Integer>> group : groups.entrySet()) {
+            int[] stopIndexes = group.getKey().stops();
+            Stop[] patternStops = new Stop[stopIndexes.length];
+            for (int i = 0; i < stopIndexes.length; i++) patternStops[i] = stops[stopIndexes[i]];
+
+            List<Integer> members = group.getValue();
+            members.sort(Comparator.<Integer>comparingInt(t -> tripTimes[t][0]).thenComparingInt(t -> t));
+            patterns.addAll(split(group.getKey().route(), patternStops, stopIndexes, trips, tripTimes, members, true));
+        }
+        if (Log.isDebugEnabled()) logFootprint(patterns, tripTimes);
+        return patterns;
+    }
+
+    /**
+     * Realtime version of a scheduled pattern: every updated trip is shifted by its delay, cancelled trips are dropped,
+     * and the rest is sorted and split again wherever a delayed trip now overtakes another one.
+     * Trips stay attached to the scheduled pattern. Returns no pattern when every trip is cancelled.
+     */
+    public static @NotNull List<TripPattern> rebuild(
+            @NotNull TripPattern scheduled,
+            @NotNull Map<Trip, TripUpdate> updates
+    ) {
+        Trip[] trips = scheduled.getTrips();
+        int[][] tripTimes = new int[trips.length][];
+        List<Integer> members = new ArrayList<>(trips.length);
+        for (int t = 0; t < trips.length; t++) {
+            TripUpdate update = updates.get(trips[t]);
+            if (update != null && update.cancelled()) continue;
+
+            int delay = update == null ? 0 : update.delaySeconds();
+            tripTimes[t] = new int[scheduled.length()];
+            for (int i = 0; i < tripTimes[t].length; i++) tripTimes[t][i] = scheduled.time(t, i) + delay;
+            members.add(t);
+        }
+
+        members.sort(Comparator.<Integer>comparingInt(t -> tripTimes[t][0]).thenComparingInt(t -> t));
+        return split(scheduled.getRoute(), scheduled.getStops(), scheduled.getStopIndexes(), trips, tripTimes, members, false);
+    }
+
+    /**
+     * Cuts trips of one stop sequence, sorted by first departure, into first-in first-out patterns
+     */
+    private static @NotNull List<TripPattern> split(
+            Route route,
+            Stop[] patternStops,
+            int[] stopIndexes,
+            Trip @NotNull [] trips,
+            int @NotNull [][] tripTimes,
+            @NotNull List<Integer> members,
+            boolean attach
+    ) {
+        // Each trip joins the first pattern whose latest trip it does not overtake anywhere
+        List<List<Integer>> fifo = new ArrayList<>();
+        for (int t : members) {
+            List<Integer> target = null;
+            for (List<Integer> candidate : fifo) {
+                if (!overtakes(tripTimes[t], tripTimes[candidate.getLast()])) {
+                    target = candidate;
+                    break;
+                }
+            }
+            if (target == null) fifo.add(target = new ArrayList<>());
+            target.add(t);
+        }
+
+        List<TripPattern> patterns = new ArrayList<>(fifo.size());
+        for (List<Integer> rows : fifo) {
+            Trip[] patternTrips = new Trip[rows.size()];
+            int[][] times = new int[rows.size()][];
+            for (int r = 0; r < rows.size(); r++) {
+                patternTrips[r] = trips[rows.get(r)];
+                times[r] = tripTimes[rows.get(r)];
+            }
+            patterns.add(new TripPattern(route, patternStops, stopIndexes, patternTrips, times, attach));
+        }
+        return patterns;
+    }
+
+    private static void logFootprint(
+            @NotNull List<TripPattern> patterns,
+            int @NotNull [][] tripTimes
+    ) {
+        long packed = patterns.stream().mapToLong(TripPattern::timesSizeInBytes).sum();
+        long unpacked = Arrays.stream(tripTimes).filter(Objects::nonNull).mapToLong(times -> 16 + 4L * times.length).sum();
+        int trips = patterns.stream().mapToInt(TripPattern::size).sum();
+        int profiles = patterns.stream().mapToInt(TripPattern::getProfileCount).sum();
+        Log.debug("Grouped %d trips into %d patterns with %d time profiles: %d KB of stop times, %d KB unpacked",
+                trips, patterns.size(), profiles, packed / 1024, unpacked / 1024);
+    }
+
+    private static boolean overtakes(int[] later, int[] earlier) {
+        for (int i = 0; i < later.length; i++) {
+            if (later[i] < earlier[i]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Routes are compared by identity, as each feed creates its own instances
+     */
+    private record SequenceKey(
+            Route route,
+            int[] stops
+    ) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SequenceKey key && key.route == route && Arrays.equals(key.stops, stops);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(route) + Arrays.hashCode(stops);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package algo.transit.services;
+
+import algo.transit.models.common.PatternStop;
+import algo.transit.models.common.Stop;
+import algo.transit.models.common.Timetable;
+import algo.transit.models.common.Trip;
+import algo.transit.models.common.TripPattern;
+import algo.transit.models.common.TripUpdate;
+import algo.transit.models.loader.AgencyLoader;
+import algo.transit.utils.Log;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Applies delay and cancellation feeds to a loaded network without reloading it.
+ * Each batch builds a new {@link Timetable} copy-on-write: only the patterns of updated trips are rebuilt,
+ * and only the stops those patterns visit get new pattern lists. The new version is then published atomically,
+ * so searches already running keep the version they started with and the next ones see the update.
+ */
+public class RealtimeService {
+    private static final String CANCELED = "CANCELED";
+
+    private final Map<String, Trip> trips;
+    private final AgencyLoader agencyLoader;
+    private final AtomicReference<Timetable> current = new AtomicReference<>(Timetable.SCHEDULED);
+
+    public RealtimeService(Map<String, Trip> trips) {
+        this(trips, AgencyLoader.NONE);
+    }
+
+    /**
+     * In lazy networks, trips of agencies that are not loaded yet are unknown and their updates are skipped
+     */
+    public RealtimeService(
+            Map<String, Trip> trips,
+            @NotNull AgencyLoader agencyLoader
+    ) {
+        this.trips = trips;
+        this.agencyLoader = agencyLoader;
+    }
+
+    /**
+     * The latest published version; cheap enough to call at the start of every search
+     */
+    public @NotNull Timetable current() {
+        return current.get();
+    }
+
+    /**
+     * Applies a batch of updates on top of the current version and publishes the result.
+     * Writers are serialized; readers never wait.
+     */
+    public synchronized @NotNull Timetable apply(@NotNull Collection<TripUpdate> batch) {
+        long start = System.nanoTime();
+        Timetable previous = current.get();
+
+        Map<Trip, TripUpdate> updates = new HashMap<>(previous.getUpdates());
+        Set<TripPattern> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+        int unknown = 0;
+        for (TripUpdate update : batch) {
+            Trip trip = trips.get(update.tripId());
+            if (trip == null || trip.getPattern() == null) {
+                unknown++;
+                continue;
+            }
+
+            TripUpdate before = update.isOnSchedule() ? updates.remove(trip) : updates.put(trip, update);
+            if (!update.equals(before) && !(before == null && update.isOnSchedule())) touched.add(trip.getPattern());
+        }
+        if (unknown > 0) Log.warn("Skipped %d updates for unknown trips", unknown);
+        if (touched.isEmpty()) return previous;
+
+        Map<TripPattern, TripPattern[]> replacements = new IdentityHashMap<>(previous.getReplacements());
+        for (TripPattern pattern : touched) {
+            if (hasUpdates(pattern, updates)) {
+                replacements.put(pattern, PatternBuilder.rebuild(pattern, updates).toArray(TripPattern[]::new));
+            } else {
+                replacements.remove(pattern);
+            }
+        }
+
+        Timetable.StopPatterns[] patternsByStop = patchStops(previous.getPatternsByStop(), touched, replacements);
+        Timetable next = new Timetable(previous.getVersion() + 1, patternsByStop, updates, replacements);
+        current.set(next);
+
+        Log.debug("Published timetable version %d: %d trip updates rebuilt %d patterns in %.2f ms",
+                next.getVersion(), batch.size(), touched.size(), (System.nanoTime() - start) / 1e6);
+        return next;
+    }
+
+    public @NotNull Timetable apply(@NotNull Path path) {
+        return apply(read(path));
+    }
+
+    /**
+     * Drops every update and goes back to the schedule
+     */
+    public synchronized @NotNull Timetable reset() {
+        Timetable next = new Timetable(current.get().getVersion() + 1, new Timetable.StopPatterns[0], Map.of(), Map.of());
+        current.set(next);
+        return next;
+    }
+
+    /**
+     * Reads trip_id, delay rows; the delay is in seconds, or CANCELED for a cancelled trip
+     */
+    public static @NotNull List<TripUpdate> read(@NotNull Path path) {
+        List<TripUpdate> updates = new ArrayList<>();
+        for (String[] row : CSVService.readCSV(path, row -> row)) {
+            String tripId = row[0].trim();
+            String delay = row[1].trim();
+            if (delay.equalsIgnoreCase(CANCELED)) {
+                updates.add(TripUpdate.cancel(tripId));
+            } else {
+                try {
+                    updates.add(TripUpdate.delay(tripId, Integer.parseInt(delay)));
+                } catch (NumberFormatException e) {
+                    Log.warn("Skipping invalid delay '%s' for trip %s", delay, tripId);
+                }
+            }
+        }
+        return updates;
+    }
+
+    private static boolean hasUpdates(
+            @NotNull TripPattern pattern,
+            @NotNull Map<Trip, TripUpdate> updates
+    ) {
+        for (Trip trip : pattern.getTrips()) {
+            if (updates.containsKey(trip)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the per-stop lists and recomputes those of the stops visited by the touched patterns,
+     * from the scheduled list with every replaced pattern swapped for its realtime versions
+     */
+    private Timetable.StopPatterns[] patchStops(
+            Timetable.StopPatterns @NotNull [] previous,
+            @NotNull Set<TripPattern> touched,
+            @NotNull Map<TripPattern, TripPattern[]> replacements
+    ) {
+        int size = previous.length;
+        for (TripPattern pattern : touched) {
+            for (int index : pattern.getStopIndexes()) size = Math.max(size, index + 1);
+        }
+        Timetable.StopPatterns[] patched = Arrays.copyOf(previous, size);
+
+        for (TripPattern pattern : touched) {
+            for (Stop stop : pattern.getStops()) {
+                agencyLoader.ensureLoaded(stop);
+                PatternStop[] scheduled = stop.getPatterns();
+                PatternStop[] merged = Timetable.merge(scheduled, replacements);
+                // Back on schedule, the stop can read its own list again
+                patched[stop.getIndex()] = merged == null ? null : new Timetable.StopPatterns(scheduled, merged);
+            }
+        }
+        return patched;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package algo.transit.services;
+
+import algo.transit.models.common.Station;
+import algo.transit.models.common.Stop;
+import algo.transit.utils.QuadTree;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Clusters stops into stations at load time. Feeds list every platform of an interchange as its own stop, all under
+ * the station's name; stops with the same name are merged when a chain of them less than {@link #CLUSTER_RADIUS_METERS}
+ * apart links them, so two places that only share a common name like "Kerk" stay apart.
+ * Stops are never modified: a reload reuses the stops of unchanged agencies while searches still run on them,
+ * so the result is kept by the network next to its stops instead.
+ */
+public class StationService {
+    public static final double CLUSTER_RADIUS_METERS = 250.0;
+
+    private StationService() {
+    }
+
+    /**
+     * Station of every stop by its index, null for stops left on their own; stopsByIndex may have gaps
+     */
+    public static Station @NotNull [] cluster(Stop @NotNull [] stopsByIndex) {
+        Map<String, List<Stop>> byName = new HashMap<>();
+        for (Stop stop : stopsByIndex) {
+            if (stop != null && stop.getName() != null) {
+                byName.computeIfAbsent(normalize(stop.getName()), _ -> new ArrayList<>()).add(stop);
+            }
+        }
+
+        Station[] stations = new Station[stopsByIndex.length];
+        for (List<Stop> namesake : byName.values()) {
+            if (namesake.size() < 2) continue;
+            for (List<Stop> members : linked(namesake)) {
+                if (members.size() < 2) continue;
+                Station station = toStation(members);
+                for (Stop stop : members) stations[stop.getIndex()] = station;
+            }
+        }
+        return stations;
+    }
+
+    private static @NotNull String normalize(@NotNull String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits stops of one name into groups where each stop is within the radius of another one of its group
+     */
+    private static @NotNull Collection<List<Stop>> linked(@NotNull List<Stop> stops) {
+        int[] parent = new int[stops.size()];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+        for (int i = 0; i < stops.size(); i++) {
+            for (int j = i + 1; j < stops.size(); j++) {
+                if (distance(stops.get(i), stops.get(j)) <= CLUSTER_RADIUS_METERS) parent[root(parent, i)] = root(parent, j);
+            }
+        }
+
+        Map<Integer, List<Stop>> groups = new HashMap<>();
+        for (int i = 0; i < stops.size(); i++) groups.computeIfAbsent(root(parent, i), _ -> new ArrayList<>()).add(stops.get(i));
+        return groups.values();
+    }
+
+    private static int root(
+            int @NotNull [] parent,
+            int i
+    ) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static @NotNull Station toStation(@NotNull List<Stop> members) {
+        members.sort(Comparator.comparing(Stop::getStopId));
+        double latitude = 0, longitude = 0, diameter = 0;
+        for (int i = 0; i < members.size(); i++) {
+            latitude += members.get(i).getLatitude();
+            longitude += members.get(i).getLongitude();
+            for (int j = i + 1; j < members.size(); j++) diameter = Math.max(diameter, distance(members.get(i), members.get(j)));
+        }
+        return new Station(
+                "station:" + members.getFirst().getStopId(),
+                members.getFirst().getName(),
+                latitude / members.size(),
+                longitude / members.size(),
+                List.copyOf(members),
+                diameter
+        );
+    }
+
+    private static double distance(
+            @NotNull Stop a,
+            @NotNull Stop b
+    ) {
+        return QuadTree.calculateDistance(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,259 @@
+package algo.transit.services;
+
+import algo.transit.models.loader.StopTimesTable;
+import algo.transit.utils.ByteKeyIndex;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming stop_times parser working on memory-mapped windows of the file.
+ * Fields are decoded in place: IDs are resolved through {@link ByteKeyIndex} and numbers are parsed from the raw bytes,
+ * so no String, array or LocalTime is created per row. Quoted fields are unwrapped but must not contain commas.
+ */
+public class StopTimesParser {
+    // Mapping windows stay well below the 2 GB limit of a single MappedByteBuffer
+    private static final long MAX_WINDOW = 1L << 30;
+    // Rough size of a stop_times row, used to presize the columns
+    private static final int ESTIMATED_ROW_BYTES = 36;
+
+    private final ByteKeyIndex tripIndex;
+    private final ByteKeyIndex stopIndex;
+
+    private int tripColumn = 0;
+    private int timeColumn = 1;
+    private int stopColumn = 2;
+    private int sequenceColumn = 3;
+
+    private int rejectedRows = 0;
+    private int unknownRows = 0;
+
+    public StopTimesParser(
+            ByteKeyIndex tripIndex,
+            ByteKeyIndex stopIndex
+    ) {
+        this.tripIndex = tripIndex;
+        this.stopIndex = stopIndex;
+    }
+
+    /**
+     * Decodes HH:MM:SS (hours may have one digit or exceed 23) into seconds, or -1 if malformed
+     */
+    private static int parseTime(
+            ByteBuffer buffer,
+            int from,
+            int to
+    ) {
+        int seconds = 0;
+        int part = 0;
+        int parts = 0;
+        boolean digits = false;
+
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                part = part * 10 + (b - '0');
+                digits = true;
+            } else if (b == ':' && digits) {
+                seconds = seconds * 60 + part;
+                part = 0;
+                parts++;
+                digits = false;
+            } else {
+                return -1;
+            }
+        }
+
+        if (!digits || parts != 2) return -1;
+        return seconds * 60 + part;
+    }
+
+    private static int parseInt(
+            ByteBuffer buffer,
+            int from,
+            int to
+    ) {
+        if (from >= to) return -1;
+
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') return -1;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    public int getRejectedRows() {
+        return rejectedRows;
+    }
+
+    /**
+     * Rows that are well-formed but reference a trip or stop that was not loaded
+     */
+    public int getUnknownRows() {
+        return unknownRows;
+    }
+
+    /**
+     * Parses the whole file, header included
+     */
+    public StopTimesTable parse(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long dataStart = readHeader(channel);
+            return parse(channel, dataStart, channel.size());
+        }
+    }
+
+    /**
+     * Reads the header line to locate the columns, and returns the offset of the first data row
+     */
+    public long readHeader(@NotNull FileChannel channel) throws IOException {
+        long length = Math.min(channel.size(), 64 * 1024);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+        int end = 0;
+        while (end < length && buffer.get(end) != '\n') end++;
+
+        byte[] header = new byte[end];
+        buffer.get(0, header);
+        String[] columns = new String(header, StandardCharsets.UTF_8).trim().split(",");
+        for (int i = 0; i < columns.length; i++) {
+            // The BOM and quotes some exporters add are not part of the name
+            String column = columns[i].replace("\uFEFF", "").replace("\"", "").trim();
+            switch (column) {
+                case "trip_id" -> tripColumn = i;
+                case "departure_time" -> timeColumn = i;
+                case "stop_id" -> stopColumn = i;
+                case "stop_sequence" -> sequenceColumn = i;
+                default -> {
+                }
+            }
+        }
+
+        return Math.min(end + 1L, channel.size());
+    }
+
+    /**
+     * Splits [from, to) into at most the given number of byte ranges, each boundary moved to the start of a line.
+     * Returns the boundaries, so range i is [result[i], result[i + 1]).
+     */
+    public static long @NotNull [] splitRanges(
+            @NotNull FileChannel channel,
+            long from,
+            long to,
+            int parts,
+            long minRangeBytes
+    ) throws IOException {
+        int count = (int) Math.max(1, Math.min(parts, (to - from) / Math.max(1, minRangeBytes)));
+        long[] boundaries = new long[count + 1];
+        boundaries[0] = from;
+        boundaries[count] = to;
+
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < count; i++) {
+            long position = Math.max(boundaries[i - 1], from + (to - from) * i / count);
+            boundaries[i] = nextLineStart(channel, position, to, probe);
+        }
+        return boundaries;
+    }
+
+    private static long nextLineStart(
+            FileChannel channel,
+            long position,
+            long to,
+            ByteBuffer probe
+    ) throws IOException {
+        // A range starting right after a newline is already aligned
+        if (position > 0) position--;
+
+        while (position < to) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return Math.min(position + i + 1, to);
+            }
+            position += read;
+        }
+        return to;
+    }
+
+    /**
+     * Parses the rows in [from, to). Both offsets must be at the start of a line (or at the end of the file).
+     */
+    public StopTimesTable parse(
+            @NotNull FileChannel channel,
+            long from,
+            long to
+    ) throws IOException {
+        StopTimesTable table = new StopTimesTable((int) Math.min(Integer.MAX_VALUE - 8, (to - from) / ESTIMATED_ROW_BYTES));
+
+        long position = from;
+        while (position < to) {
+            long length = Math.min(MAX_WINDOW, to - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            int limit = (int) length;
+            if (position + length < to) {
+                // Cut the window after its last complete line
+                while (limit > 0 && buffer.get(limit - 1) != '\n') limit--;
+                if (limit == 0) throw new IOException("stop_times line longer than " + MAX_WINDOW + " bytes");
+            }
+
+            parseWindow(buffer, limit, table);
+            position += limit;
+        }
+
+        return table;
+    }
+
+    private void parseWindow(
+            ByteBuffer buffer,
+            int limit,
+            StopTimesTable table
+    ) {
+        int field = 0;
+        int fieldStart = 0;
+        int trip = -1, stop = -1, sequence = -1, time = -1;
+
+        for (int i = 0; i <= limit; i++) {
+            // A missing final newline is treated as if it were there
+            byte b = i < limit ? buffer.get(i) : (byte) '\n';
+            if (b != ',' && b != '\n') continue;
+
+            int start = fieldStart;
+            int end = i;
+            if (b == '\n' && end > start && buffer.get(end - 1) == '\r') end--;
+            if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+                start++;
+                end--;
+            }
+
+            if (field == tripColumn) trip = tripIndex.get(buffer, start, end);
+            else if (field == stopColumn) stop = stopIndex.get(buffer, start, end);
+            else if (field == timeColumn) time = parseTime(buffer, start, end);
+            else if (field == sequenceColumn) sequence = parseInt(buffer, start, end);
+
+            fieldStart = i + 1;
+            field++;
+
+            if (b == '\n') {
+                // Blank lines (including the virtual one after a trailing newline) are ignored
+                if (field > 1 || end > start) {
+                    if (time < 0 || sequence < 0) rejectedRows++;
+                    else if (trip < 0 || stop < 0) unknownRows++;
+                    else table.add(trip, stop, sequence, time);
+                }
+                field = 0;
+                trip = stop = sequence = time = -1;
+            }
+        }
+    }
+}
\ No newline at end of file
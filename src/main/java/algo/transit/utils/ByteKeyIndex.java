@@ -0,0 +1,101 @@
+package algo.transit.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only hash index from UTF-8 encoded keys to their position in the key list.
+ * Lookups work directly on a byte range of a buffer, so CSV fields can be resolved without creating Strings.
+ */
+public class ByteKeyIndex {
+    private static final int EMPTY = -1;
+
+    private final byte[] pool;
+    private final int[] offsets;
+    private final int[] slots;
+    private final int mask;
+
+    public ByteKeyIndex(@NotNull List<String> keys) {
+        byte[][] encoded = new byte[keys.size()][];
+        int total = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+            total += encoded[i].length;
+        }
+
+        // All keys are packed into one array; key i spans offsets[i]..offsets[i + 1]
+        this.pool = new byte[total];
+        this.offsets = new int[encoded.length + 1];
+        for (int i = 0; i < encoded.length; i++) {
+            System.arraycopy(encoded[i], 0, pool, offsets[i], encoded[i].length);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+
+        // Load factor of at most 0.5 keeps probe sequences short
+        int capacity = Integer.highestOneBit(Math.max(2, encoded.length) * 2) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(slots, EMPTY);
+
+        for (int i = 0; i < encoded.length; i++) {
+            int slot = hash(pool, offsets[i], offsets[i + 1]) & mask;
+            while (slots[slot] != EMPTY) {
+                if (equalsKey(slots[slot], pool, offsets[i], offsets[i + 1])) break;
+                slot = (slot + 1) & mask;
+            }
+            // Duplicate keys keep their first index
+            if (slots[slot] == EMPTY) slots[slot] = i;
+        }
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0x811C9DC5;
+        for (int i = from; i < to; i++) h = (h ^ bytes[i]) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(ByteBuffer buffer, int from, int to) {
+        int h = 0x811C9DC5;
+        for (int i = from; i < to; i++) h = (h ^ buffer.get(i)) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Index of the key stored in buffer[from, to), or -1 if it is unknown
+     */
+    public int get(
+            @NotNull ByteBuffer buffer,
+            int from,
+            int to
+    ) {
+        int slot = hash(buffer, from, to) & mask;
+        int length = to - from;
+        while (true) {
+            int candidate = slots[slot];
+            if (candidate == EMPTY) return EMPTY;
+            if (offsets[candidate + 1] - offsets[candidate] == length && equalsKey(candidate, buffer, from)) return candidate;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean equalsKey(int key, byte[] bytes, int from, int to) {
+        return Arrays.equals(pool, offsets[key], offsets[key + 1], bytes, from, to);
+    }
+
+    private boolean equalsKey(int key, ByteBuffer buffer, int from) {
+        int start = offsets[key];
+        int end = offsets[key + 1];
+        for (int i = start; i < end; i++) {
+            if (pool[i] != buffer.get(from + i - start)) return false;
+        }
+        return true;
+    }
+}
\ No newline at end of file
@@ -4,6 +4,7 @@ import algo.transit.enums.TType;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -16,6 +17,8 @@ public class CLArgs {
     private String startStop;
     private String endStop;
     private LocalTime startTime;
+    private LocalDate serviceDate = null;
+    private String delaysFile = null;
     private double walkingSpeed = 80.0;
     private double maxWalkTime = 10.0;
     private List<TType> forbiddenModes = new ArrayList<>();
@@ -25,4 +28,17 @@ public class CLArgs {
     private String outputFormat = "detailed";
     private boolean showStats = false;
     private boolean visualize = false;
+    private String matrixOutput = null;
+    private String matrixFormat = "csv";
+    private int maxTravelTime = Integer.MAX_VALUE;
+    private boolean lazyLoad = false;
+    // Seconds between checks of the feeds for changes; 0 answers once and exits
+    private int watchSeconds = 0;
+    private boolean bidirectional = false;
+    private String hubLabelsFile = null;
+    private String dataRoot = null;
+    // Empty loads every agency found under the data root
+    private List<String> agencies = new ArrayList<>();
+    private String statsOutput = null;
+    private Log.Level logLevel = Log.Level.INFO;
 }
\ No newline at end of file
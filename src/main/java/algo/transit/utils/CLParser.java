@@ -3,6 +3,7 @@ package algo.transit.utils;
 import algo.transit.enums.TType;
 import org.jetbrains.annotations.NotNull;
 
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -18,10 +19,25 @@ public class CLParser {
         System.out.println("  --forbidden-modes <modes>    Set forbidden transport modes (e.g., BUS, TRAIN)");
         System.out.println("  --mode-weights <mode:weight> Set custom weights for transport modes");
         System.out.println("  --arrive-by                  Find path arriving at specified time, not departing");
-        System.out.println("  --optimization-goal <goal>   Set optimization goal: time|transfers|walking (default: time)");
+        System.out.println("  --date <yyyy-mm-dd>          Only use trips running on this date per the GTFS calendars");
+        System.out.println("  --delays <file>              Apply realtime trip updates (trip_id,delay in seconds or CANCELED)");
+        System.out.println("  --optimization-goal <goal>   Set optimization goal: time|transfers|walking|pareto (default: time)");
+        System.out.println("  --bidirectional              Bound the search with a backward search from the target first");
+        System.out.println("  --hub-labels <file>          Prune searches with lower bounds from this file, built first if missing or stale");
         System.out.println("  --output-format <format>     Set output format: detailed|summary (default: detailed)");
         System.out.println("  --show-stats                 Show detailed statistics about the found path");
         System.out.println("  --visualize                  Enable visualization of the pathfinding algorithm");
+        System.out.println("  --matrix <file>              Write a travel-time matrix; START_STOP and END_STOP are then");
+        System.out.println("                               comma-separated stop IDs or files with one stop ID per line");
+        System.out.println("  --matrix-format <format>     Set matrix output format: csv|binary (default: csv)");
+        System.out.println("  --max-travel-time <minutes>  Bound matrix searches by travel time (default: unbounded)");
+        System.out.println("  --stats-json <file>          Write search counters and latency percentiles as JSON");
+        System.out.println("  --lazy-load                  Load each agency's timetable only when the query needs it");
+        System.out.println("  --watch <seconds>            Keep running, and answer again whenever an agency's files change");
+        System.out.println("  --data-root <dir>            Directory holding one GTFS directory per agency (default: src/main/resources/GTFS)");
+        System.out.println("  --agencies <names>           Only load these agencies (e.g., STIB DELIJN or STIB,DELIJN)");
+        System.out.println("  --log-level <level>          Set log level: debug|info|warn|error|off (default: info)");
+        System.out.println("  --quiet                      Only log warnings and errors (same as --log-level warn)");
         System.out.println("  --help                       Display this help message");
     }
 
@@ -99,14 +115,39 @@ public class CLParser {
                         }
                     }
                     case "--arrive-by" -> cmdArgs.setArriveBy(true);
+                    case "--date" -> {
+                        if (i + 1 < args.length) {
+                            try {
+                                cmdArgs.setServiceDate(LocalDate.parse(args[++i]));
+                            } catch (DateTimeParseException e) {
+                                throw new IllegalArgumentException("Invalid date format. Use YYYY-MM-DD format (e.g., 2025-03-14)");
+                            }
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --date");
+                        }
+                    }
+                    case "--delays" -> {
+                        if (i + 1 < args.length) {
+                            cmdArgs.setDelaysFile(args[++i]);
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --delays");
+                        }
+                    }
+                    case "--hub-labels" -> {
+                        if (i + 1 < args.length) {
+                            cmdArgs.setHubLabelsFile(args[++i]);
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --hub-labels");
+                        }
+                    }
                     case "--optimization-goal" -> {
                         if (i + 1 < args.length) {
                             String goal = args[++i].toLowerCase();
-                            if (goal.equals("time") || goal.equals("transfers") || goal.equals("walking")) {
+                            if (goal.equals("time") || goal.equals("transfers") || goal.equals("walking") || goal.equals("pareto")) {
                                 cmdArgs.setOptimizationGoal(goal);
                             } else {
                                 System.err.println("Invalid optimization goal: " + goal +
-                                        ". Using default (time). Valid options: time, transfers, walking");
+                                        ". Using default (time). Valid options: time, transfers, walking, pareto");
                                 cmdArgs.setOptimizationGoal("time");
                             }
                         } else {
@@ -129,6 +170,83 @@ public class CLParser {
                     }
                     case "--show-stats" -> cmdArgs.setShowStats(true);
                     case "--visualize" -> cmdArgs.setVisualize(true);
+                    case "--matrix" -> {
+                        if (i + 1 < args.length) {
+                            cmdArgs.setMatrixOutput(args[++i]);
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --matrix");
+                        }
+                    }
+                    case "--matrix-format" -> {
+                        if (i + 1 < args.length) {
+                            String format = args[++i].toLowerCase();
+                            if (format.equals("csv") || format.equals("binary")) {
+                                cmdArgs.setMatrixFormat(format);
+                            } else {
+                                System.err.println("Invalid matrix format: " + format +
+                                        ". Using default (csv). Valid options: csv, binary");
+                                cmdArgs.setMatrixFormat("csv");
+                            }
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --matrix-format");
+                        }
+                    }
+                    case "--max-travel-time" -> {
+                        if (i + 1 < args.length) {
+                            cmdArgs.setMaxTravelTime(Integer.parseInt(args[++i]));
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --max-travel-time");
+                        }
+                    }
+                    case "--lazy-load" -> cmdArgs.setLazyLoad(true);
+                    case "--watch" -> {
+                        if (i + 1 < args.length) {
+                            cmdArgs.setWatchSeconds(Integer.parseInt(args[++i]));
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --watch");
+                        }
+                        if (cmdArgs.getWatchSeconds() <= 0) throw new IllegalArgumentException("--watch needs a positive number of seconds");
+                    }
+                    case "--bidirectional" -> cmdArgs.setBidirectional(true);
+                    case "--quiet" -> cmdArgs.setLogLevel(Log.Level.WARN);
+                    case "--log-level" -> {
+                        if (i + 1 < args.length) {
+                            String level = args[++i].toUpperCase();
+                            try {
+                                cmdArgs.setLogLevel(Log.Level.valueOf(level));
+                            } catch (IllegalArgumentException e) {
+                                System.err.println("Invalid log level: " + level.toLowerCase() +
+                                        ". Using default (info). Valid options: debug, info, warn, error, off");
+                                cmdArgs.setLogLevel(Log.Level.INFO);
+                            }
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --log-level");
+                        }
+                    }
+                    case "--data-root" -> {
+                        if (i + 1 < args.length) {
+                            cmdArgs.setDataRoot(args[++i]);
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --data-root");
+                        }
+                    }
+                    case "--agencies" -> {
+                        if (i + 1 >= args.length || args[i + 1].startsWith("--")) {
+                            throw new IllegalArgumentException("Missing values for --agencies");
+                        }
+                        while (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                            for (String agency : args[++i].split(",")) {
+                                if (!agency.isBlank()) cmdArgs.getAgencies().add(agency.trim());
+                            }
+                        }
+                    }
+                    case "--stats-json" -> {
+                        if (i + 1 < args.length) {
+                            cmdArgs.setStatsOutput(args[++i]);
+                        } else {
+                            throw new IllegalArgumentException("Missing value for --stats-json");
+                        }
+                    }
                     case "--help" -> {
                         printUsage();
                         System.exit(0);
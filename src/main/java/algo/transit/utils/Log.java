@@ -0,0 +1,157 @@
+package algo.transit.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leveled logging facade with a single background writer thread.
+ * A disabled call costs one volatile read; enabled messages are queued unformatted and formatted by the writer,
+ * so searching and loading threads never block on the console. DEBUG and INFO go to stdout, WARN and ERROR to stderr.
+ */
+public final class Log {
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final long SHUTDOWN_FLUSH_MILLIS = 2000;
+
+    private static final BlockingQueue<Entry> QUEUE = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private static volatile Level threshold = Level.INFO;
+
+    static {
+        Thread writer = new Thread(Log::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        // Messages still queued when main returns would otherwise be lost with the daemon writer
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(SHUTDOWN_FLUSH_MILLIS), "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    public static Level getLevel() {
+        return threshold;
+    }
+
+    public static void setLevel(@NotNull Level level) {
+        threshold = level;
+    }
+
+    public static boolean isEnabled(@NotNull Level level) {
+        return level.ordinal() >= threshold.ordinal();
+    }
+
+    /**
+     * Guard for call sites that would build their arguments eagerly
+     */
+    public static boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public static void debug(@NotNull String format, Object... args) {
+        if (isEnabled(Level.DEBUG)) enqueue(new Entry(Level.DEBUG, format, args, null, null));
+    }
+
+    public static void info(@NotNull String format, Object... args) {
+        if (isEnabled(Level.INFO)) enqueue(new Entry(Level.INFO, format, args, null, null));
+    }
+
+    public static void warn(@NotNull String format, Object... args) {
+        if (isEnabled(Level.WARN)) enqueue(new Entry(Level.WARN, format, args, null, null));
+    }
+
+    public static void error(@NotNull String format, Object... args) {
+        if (isEnabled(Level.ERROR)) enqueue(new Entry(Level.ERROR, format, args, null, null));
+    }
+
+    public static void error(
+            @NotNull String message,
+            @NotNull Throwable error
+    ) {
+        if (isEnabled(Level.ERROR)) enqueue(new Entry(Level.ERROR, message, null, error, null));
+    }
+
+    /**
+     * Blocks until every message logged before this call has been written.
+     * Call it before printing results directly to stdout, so log lines do not interleave with them.
+     */
+    public static void flush() {
+        flush(Long.MAX_VALUE);
+    }
+
+    private static void flush(long timeoutMillis) {
+        CompletableFuture<Void> barrier = new CompletableFuture<>();
+        enqueue(new Entry(null, null, null, null, barrier));
+        try {
+            barrier.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // The writer is gone or too slow; there is nothing left to wait for
+        }
+    }
+
+    private static void enqueue(Entry entry) {
+        try {
+            // A full queue applies back-pressure instead of dropping messages
+            QUEUE.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void drain() {
+        List<Entry> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(QUEUE.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            QUEUE.drainTo(batch);
+
+            for (Entry entry : batch) {
+                if (entry.barrier() != null) {
+                    System.out.flush();
+                    System.err.flush();
+                    entry.barrier().complete(null);
+                } else {
+                    write(entry);
+                }
+            }
+            System.out.flush();
+            System.err.flush();
+            batch.clear();
+        }
+    }
+
+    private static void write(Entry entry) {
+        PrintStream stream = entry.level().ordinal() >= Level.WARN.ordinal() ? System.err : System.out;
+        try {
+            String message = entry.args() == null || entry.args().length == 0
+                    ? entry.format()
+                    : String.format(entry.format(), entry.args());
+            stream.println(message);
+        } catch (RuntimeException e) {
+            // A bad format string must not kill the writer
+            stream.println(entry.format());
+        }
+        if (entry.error() != null) entry.error().printStackTrace(stream);
+    }
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private record Entry(
+            Level level,
+            String format,
+            Object[] args,
+            Throwable error,
+            CompletableFuture<Void> barrier
+    ) {
+    }
+}
\ No newline at end of file
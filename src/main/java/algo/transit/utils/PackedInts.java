@@ -0,0 +1,79 @@
+package algo.transit.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Immutable int array stored with the fewest bits per value that cover its range.
+ * Values are kept relative to the minimum, so negative and large values pack as well as small ones;
+ * any element is decoded in constant time from at most two words.
+ */
+public final class PackedInts {
+    private final long[] words;
+    private final int size;
+    private final int bits;
+    private final int min;
+    private final long mask;
+
+    private PackedInts(
+            long[] words,
+            int size,
+            int bits,
+            int min
+    ) {
+        this.words = words;
+        this.size = size;
+        this.bits = bits;
+        this.min = min;
+        // The range of an int array spans at most 32 bits
+        this.mask = (1L << bits) - 1;
+    }
+
+    public static @NotNull PackedInts of(int @NotNull [] values) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        if (values.length == 0) min = max = 0;
+
+        // A constant array needs no storage at all
+        int bits = 64 - Long.numberOfLeadingZeros((long) max - min);
+        long[] words = new long[(int) (((long) values.length * bits + 63) >>> 6)];
+        for (int i = 0; i < values.length && bits > 0; i++) {
+            long value = (long) values[i] - min;
+            long bitIndex = (long) i * bits;
+            int word = (int) (bitIndex >>> 6);
+            int shift = (int) (bitIndex & 63);
+            words[word] |= value << shift;
+            if (shift + bits > 64) words[word + 1] |= value >>> (64 - shift);
+        }
+        return new PackedInts(words, values.length, bits, min);
+    }
+
+    public int get(int index) {
+        if (bits == 0) return min;
+
+        long bitIndex = (long) index * bits;
+        int word = (int) (bitIndex >>> 6);
+        int shift = (int) (bitIndex & 63);
+        long value = words[word] >>> shift;
+        if (shift + bits > 64) value |= words[word + 1] << (64 - shift);
+        return (int) (min + (value & mask));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int bitsPerValue() {
+        return bits;
+    }
+
+    /**
+     * Approximate heap footprint, including the object headers
+     */
+    public long sizeInBytes() {
+        return 40 + 16 + 8L * words.length;
+    }
+}
\ No newline at end of file
@@ -1,6 +1,9 @@
 package algo.transit.utils;
 
+import algo.transit.enums.TType;
+import algo.transit.events.ResultPrintEvent;
 import algo.transit.models.common.Stop;
+import algo.transit.models.pathfinder.Journey;
 import algo.transit.models.pathfinder.Transition;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -21,6 +24,26 @@ public class PathPrinter {
             String outputFormat,
             boolean showStats,
             @NotNull Map<String, Stop> stops
+    ) {
+        ResultPrintEvent event = new ResultPrintEvent();
+        event.begin();
+
+        writePath(path, outputFormat, showStats, stops);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.format = outputFormat;
+            event.journeys = path.isEmpty() ? 0 : 1;
+            event.segments = path.size();
+            event.commit();
+        }
+    }
+
+    private static void writePath(
+            @NotNull List<Transition> path,
+            String outputFormat,
+            boolean showStats,
+            @NotNull Map<String, Stop> stops
     ) {
         if (path.isEmpty()) {
             System.out.println("No path found.");
@@ -49,6 +72,41 @@ public class PathPrinter {
         if (showStats) printPathStatistics(path, stops);
     }
 
+    /**
+     * Prints every journey of a Pareto set with the criteria it is optimal for
+     */
+    public static void printParetoPaths(
+            @NotNull List<Journey> journeys,
+            String outputFormat,
+            boolean showStats,
+            @NotNull Map<String, Stop> stops
+    ) {
+        ResultPrintEvent event = new ResultPrintEvent();
+        event.begin();
+
+        if (journeys.isEmpty()) {
+            System.out.println("No path found.");
+        } else {
+            System.out.println("\nPareto-optimal journeys: " + journeys.size());
+        }
+        int segments = 0;
+        for (int i = 0; i < journeys.size(); i++) {
+            Journey journey = journeys.get(i);
+            System.out.println("\n#" + (i + 1) + ": " + formatDuration(journey.travelMinutes()) +
+                    ", " + journey.transfers() + " transfers, " + journey.walkingMeters() + " m walking");
+            writePath(journey.path(), outputFormat, showStats, stops);
+            segments += journey.path().size();
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.format = outputFormat;
+            event.journeys = journeys.size();
+            event.segments = segments;
+            event.commit();
+        }
+    }
+
     private static void printDetailedPath(
             @NotNull List<Transition> path,
             long totalMinutes,
@@ -72,15 +130,15 @@ public class PathPrinter {
         int i = 0;
         while (i < path.size()) {
             Transition current = path.get(i);
-            String currentMode = current.mode();
+            TType currentMode = current.mode();
             String currentRoute = current.route();
 
             // Find the last consecutive transition with the same mode and route
             int j = i;
             while (j + 1 < path.size() &&
-                    path.get(j + 1).mode().equals(currentMode) &&
+                    path.get(j + 1).mode() == currentMode &&
                     path.get(j + 1).route().equals(currentRoute) &&
-                    !currentMode.equals("FOOT")) {
+                    currentMode != TType.FOOT) {
                 j++;
             }
 
@@ -140,11 +198,11 @@ public class PathPrinter {
         long totalWaitTime = 0;
         long totalInVehicleTime = 0;
 
-        String lastMode = "NONE";
+        TType lastMode = null;
         LocalTime lastArrival = null;
 
         for (Transition transition : path) {
-            String mode = transition.mode();
+            String mode = transition.mode().name();
 
             // Count segments by mode
             modeCount.put(mode, modeCount.getOrDefault(mode, 0) + 1);
@@ -154,7 +212,7 @@ public class PathPrinter {
             modeDuration.put(mode, modeDuration.getOrDefault(mode, 0L) + duration);
 
             // Calculate waiting time
-            if (lastArrival != null && !lastMode.equals("NONE")) {
+            if (lastArrival != null && lastMode != null) {
                 long wait = calculateMinutesBetween(lastArrival, transition.departure());
                 if (wait > 0) {
                     totalWaitTime += wait;
@@ -174,7 +232,7 @@ public class PathPrinter {
                 modeDistance.put(mode, modeDistance.getOrDefault(mode, 0L) + Math.round(distance));
             }
 
-            lastMode = mode;
+            lastMode = transition.mode();
             lastArrival = transition.arrival();
         }
 
@@ -220,19 +278,19 @@ public class PathPrinter {
         if (path.isEmpty()) return 0;
 
         int transfers = 0;
-        String lastMode = "NONE";
+        TType lastMode = null;
         String lastRoute = "";
 
         for (Transition transition : path) {
-            String currentMode = transition.mode();
+            TType currentMode = transition.mode();
             String currentRoute = transition.route();
 
             // Only count as a transfer if:
             // 1. Not the first segment
             // 2. Different route (unless it's FOOT)
             // 3. Not switching from FOOT to any mode (this isn't a transfer)
-            if (!lastMode.equals("NONE") && !lastMode.equals("FOOT") &&
-                    (!currentRoute.equals(lastRoute) || !currentMode.equals(lastMode))) {
+            if (lastMode != null && lastMode != TType.FOOT &&
+                    (!currentRoute.equals(lastRoute) || currentMode != lastMode)) {
                 transfers++;
             }
 
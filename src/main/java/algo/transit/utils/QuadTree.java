@@ -1,6 +1,7 @@
 package algo.transit.utils;
 
 import algo.transit.models.common.Stop;
+import algo.transit.models.pathfinder.QueryStats;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
@@ -69,19 +70,41 @@ public class QuadTree {
             double lat,
             double lon,
             double radius
+    ) {
+        return findNearby(lat, lon, radius, null);
+    }
+
+    /**
+     * Same as {@link #findNearby(double, double, double)}, counting the visited nodes in stats when it is not null
+     */
+    public List<Stop> findNearby(
+            double lat,
+            double lon,
+            double radius,
+            QueryStats stats
     ) {
         List<Stop> result = new ArrayList<>();
-        if (!intersectsRadius(lat, lon, radius)) return result;
+        collectNearby(lat, lon, radius, result, stats);
+        return result;
+    }
+
+    private void collectNearby(
+            double lat,
+            double lon,
+            double radius,
+            List<Stop> result,
+            QueryStats stats
+    ) {
+        if (stats != null) stats.spatialNodeVisited();
+        if (!intersectsRadius(lat, lon, radius)) return;
 
         for (Stop stop : points) {
             if (calculateDistance(lat, lon, stop.getLatitude(), stop.getLongitude()) <= radius) result.add(stop);
         }
 
         if (children != null) {
-            for (QuadTree child : children) result.addAll(child.findNearby(lat, lon, radius));
+            for (QuadTree child : children) child.collectNearby(lat, lon, radius, result, stats);
         }
-
-        return result;
     }
 
     @Contract(pure = true)
@@ -0,0 +1,60 @@
+package algo.transit.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only mapping between external IDs and dense ints.
+ * IDs are resolved once at load time; searches then index arrays with the ints and only map back for output.
+ * Ids are never reused or removed, so they stay valid while more feeds are loaded.
+ */
+public class SymbolTable {
+    public static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1024];
+    private volatile int size = 0;
+
+    /**
+     * Returns the id of the name, assigning the next free one if it is new
+     */
+    public int intern(@NotNull String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) return id;
+
+            // Publish the name and the new size before the id, so readers who find the id can resolve it
+            int next = size;
+            String[] current = names;
+            if (next == current.length) current = Arrays.copyOf(current, next * 2);
+            current[next] = name;
+            names = current;
+            size = next + 1;
+            ids.put(name, next);
+            return next;
+        }
+    }
+
+    /**
+     * Id of the name, or {@link #UNKNOWN} if it was never interned
+     */
+    public int get(String name) {
+        if (name == null) return UNKNOWN;
+        return ids.getOrDefault(name, UNKNOWN);
+    }
+
+    public String name(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("Unknown symbol " + id);
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
\ No newline at end of file
@@ -5,6 +5,38 @@ import org.jetbrains.annotations.NotNull;
 import java.time.LocalTime;
 
 public class TimeUtils {
+    public static final int MINUTES_PER_DAY = 1440;
+    public static final int SECONDS_PER_DAY = 86400;
+
+    // Every clock time of a day, so loaders can share instances instead of allocating one per row
+    private static final LocalTime[] TIMES_OF_DAY = new LocalTime[SECONDS_PER_DAY];
+
+    static {
+        for (int i = 0; i < SECONDS_PER_DAY; i++) TIMES_OF_DAY[i] = LocalTime.ofSecondOfDay(i);
+    }
+
+    /**
+     * Shared LocalTime for a GTFS seconds value; times past midnight (e.g. 25:10:00) wrap around
+     */
+    public static @NotNull LocalTime timeOfSeconds(int seconds) {
+        return TIMES_OF_DAY[Math.floorMod(seconds, SECONDS_PER_DAY)];
+    }
+
+    /**
+     * Minutes elapsed since midnight, ignoring seconds
+     */
+    public static int toMinutes(@NotNull LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    /**
+     * Clock time for an absolute minute count, wrapping over midnight
+     */
+    public static @NotNull LocalTime fromMinutes(int minutes) {
+        int minuteOfDay = Math.floorMod(minutes, MINUTES_PER_DAY);
+        return LocalTime.of(minuteOfDay / 60, minuteOfDay % 60);
+    }
+
     /**
      * Calculate minutes between two LocalTime objects with adjustments for transit time formats
      */
@@ -221,7 +221,7 @@ public class DVisualizer extends JFrame implements GLEventListener {
     }
 
     private void calculateFrameMapping() {
-        int totalStates = recorder.getTotalSteps();
+        int totalStates = recorder.getForwardSteps();
         framesToStateIndex = new int[TOTAL_FRAMES];
 
         // Map each frame to a state index
@@ -450,7 +450,7 @@ public class DVisualizer extends JFrame implements GLEventListener {
         int stateIndex = framesToStateIndex[currentFrame];
         float timeSeconds = (float) currentFrame / FPS;
         String progressText = String.format("Step %d/%d (%.1f sec)",
-                stateIndex, recorder.getTotalSteps() - 1, timeSeconds);
+                stateIndex, recorder.getForwardSteps() - 1, timeSeconds);
 
         int textWidth = (int) textRenderer.getBounds(progressText).getWidth();
         textRenderer.draw(progressText, barX + (barWidth - textWidth) / 2, barY + 5);
@@ -0,0 +1,117 @@
+package algo.transit.models.common;
+
+import algo.transit.models.loader.AgencyFeed;
+import algo.transit.services.CalendarReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceDaysTest {
+
+    @Test
+    void testsDaysAgainstTheBitset() {
+        long first = LocalDate.of(2025, 1, 1).toEpochDay();
+        // Runs on the first day and on day 64, the first bit of the second word
+        ServiceDays service = new ServiceDays("S", first, new long[]{1L, 1L});
+
+        assertTrue(service.runsOn(first));
+        assertFalse(service.runsOn(first + 1));
+        assertTrue(service.runsOn(first + 64));
+        assertFalse(service.runsOn(first - 1));
+        assertFalse(service.runsOn(first + 128));
+        assertEquals(2, service.countDays());
+    }
+
+    @Test
+    void runsOnAnyDayWithoutADate() {
+        ServiceDays never = new ServiceDays("S", 0, new long[0]);
+
+        assertTrue(never.runsOn(ServiceDays.ANY_DAY));
+        assertTrue(never.runsOn(ServiceDays.epochDay(null)));
+        assertFalse(never.runsOn(LocalDate.of(2025, 1, 1)));
+    }
+
+    @Test
+    void readsWeekdaysAndExceptionsFromTheCalendars(@TempDir Path directory) throws IOException {
+        Files.writeString(directory.resolve("calendar.csv"), """
+                service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date
+                WEEK,1,1,1,1,1,0,0,20250106,20250119
+                """);
+        Files.writeString(directory.resolve("calendar_dates.csv"), """
+                service_id,date,exception_type
+                WEEK,20250108,2
+                WEEK,20250111,1
+                EXTRA,20250301,1
+                """);
+
+        Map<String, ServiceDays> services = CalendarReader.read(AgencyFeed.inDirectory(directory));
+
+        ServiceDays week = services.get("WEEK");
+        assertTrue(week.runsOn(LocalDate.of(2025, 1, 6)));
+        assertFalse(week.runsOn(LocalDate.of(2025, 1, 8)), "removed by an exception");
+        assertTrue(week.runsOn(LocalDate.of(2025, 1, 11)), "added on a saturday");
+        assertFalse(week.runsOn(LocalDate.of(2025, 1, 12)), "sunday");
+        assertFalse(week.runsOn(LocalDate.of(2025, 1, 20)), "after the end date");
+        assertEquals(10, week.countDays());
+
+        ServiceDays extra = services.get("EXTRA");
+        assertTrue(extra.runsOn(LocalDate.of(2025, 3, 1)));
+        assertEquals(1, extra.countDays());
+    }
+
+    @Test
+    void skipsMalformedRowsAndKeepsTheRest(@TempDir Path directory) throws IOException {
+        Files.writeString(directory.resolve("calendar.csv"), """
+                service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date
+                BROKEN,1,1,1,1,1,0,0,2025-01-06,20250119
+                SHORT,1,1
+                WEEK,1,1,1,1,1,0,0,20250106,20250119
+                """);
+        Files.writeString(directory.resolve("calendar_dates.csv"), """
+                service_id,date,exception_type
+                WEEK,tomorrow,2
+                WEEK,20250108,3
+                WEEK,20250111,1
+                """);
+
+        Map<String, ServiceDays> services = CalendarReader.read(AgencyFeed.inDirectory(directory));
+
+        assertEquals(Set.of("WEEK"), services.keySet());
+        assertTrue(services.get("WEEK").runsOn(LocalDate.of(2025, 1, 8)));
+        assertEquals(11, services.get("WEEK").countDays());
+    }
+
+    @Test
+    void findsColumnsByName(@TempDir Path directory) throws IOException {
+        Files.writeString(directory.resolve("calendar.csv"), """
+                start_date,end_date,sunday,saturday,friday,thursday,wednesday,tuesday,monday,service_id
+                20250106,20250112,1,1,0,0,0,0,0,WEEKEND
+                """);
+        Files.writeString(directory.resolve("calendar_dates.csv"), """
+                exception_type,date,service_id
+                2,20250112,WEEKEND
+                """);
+
+        ServiceDays weekend = CalendarReader.read(AgencyFeed.inDirectory(directory)).get("WEEKEND");
+
+        assertTrue(weekend.runsOn(LocalDate.of(2025, 1, 11)));
+        assertFalse(weekend.runsOn(LocalDate.of(2025, 1, 12)), "removed by an exception");
+        assertFalse(weekend.runsOn(LocalDate.of(2025, 1, 6)), "monday");
+        assertEquals(1, weekend.countDays());
+    }
+
+    @Test
+    void hasNoServicesWithoutCalendars(@TempDir Path directory) {
+        assertTrue(CalendarReader.read(AgencyFeed.inDirectory(directory)).isEmpty());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package algo.transit.models.pathfinder;
+
+import algo.transit.models.common.Stop;
+import algo.transit.services.HubLabelService;
+import algo.transit.utils.QuadTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HubLabelsTest {
+    private static final double WALKING_SPEED = 80.0;
+    private static final double MAX_WALKING_TIME = 10.0;
+
+    @Test
+    void boundIsTheBestSumOverSharedHubs() {
+        // Stop 0 reaches hubs 1 and 2, stop 3 is reached from hubs 2 and 3; stop 4 shares no hub with stop 0
+        HubLabels labels = new HubLabels(
+                0, WALKING_SPEED, MAX_WALKING_TIME,
+                new int[][]{{0, 1, 2}, {1}, {2}, {3}, {4}},
+                new int[][]{{0, 5, 9}, {0}, {0}, {0}, {0}},
+                new int[][]{{0}, {1}, {2}, {2, 3}, {4}},
+                new int[][]{{0}, {0}, {0}, {4, 0}, {0}}
+        );
+
+        assertEquals(13, labels.lowerBound(0, 3));
+        assertEquals(HubLabels.UNREACHABLE, labels.lowerBound(0, 4));
+        assertEquals(0, labels.lowerBound(3, 3));
+        // Unknown stops get no bound rather than a wrong one
+        assertEquals(0, labels.lowerBound(0, 7));
+    }
+
+    @Test
+    void builtBoundsMatchShortestWalks() {
+        Map<String, Stop> stops = scatteredStops(40, new Random(7));
+        int[][] shortest = shortestWalks(stops);
+
+        HubLabels labels = HubLabelService.build(stops, WALKING_SPEED, MAX_WALKING_TIME, 0);
+        HubLabels.TargetBounds bounds = labels.boundsTo(stops.get("S0"));
+
+        for (int from = 0; from < shortest.length; from++) {
+            for (int to = 0; to < shortest.length; to++) {
+                assertEquals(shortest[from][to], labels.lowerBound(from, to), from + " -> " + to);
+            }
+            assertEquals(shortest[from][0], bounds.from(from));
+        }
+    }
+
+    private static Map<String, Stop> scatteredStops(
+            int count,
+            Random random
+    ) {
+        Map<String, Stop> stops = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            // About 3 km across, so some stops are out of walking range of each other
+            Stop stop = new Stop("S" + i, "Stop " + i, 50.85 + random.nextDouble() * 0.03, 4.35 + random.nextDouble() * 0.04);
+            stop.setIndex(i);
+            stops.put(stop.getStopId(), stop);
+        }
+        return stops;
+    }
+
+    /**
+     * All-pairs minutes over the walks the labels are built from, by Floyd-Warshall
+     */
+    private static int[][] shortestWalks(Map<String, Stop> stops) {
+        int n = stops.size();
+        Stop[] byIndex = new Stop[n];
+        for (Stop stop : stops.values()) byIndex[stop.getIndex()] = stop;
+
+        long[][] minutes = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(minutes[i], HubLabels.UNREACHABLE);
+            minutes[i][i] = 0;
+            for (int j = 0; j < n; j++) {
+                if (i == j) continue;
+                double distance = QuadTree.calculateDistance(
+                        byIndex[i].getLatitude(), byIndex[i].getLongitude(),
+                        byIndex[j].getLatitude(), byIndex[j].getLongitude()
+                );
+                int walk = (int) Math.ceil(distance / WALKING_SPEED);
+                // Very short walks take no time, as in the searches
+                if (walk <= MAX_WALKING_TIME) minutes[i][j] = walk <= 1 ? 0 : walk;
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) minutes[i][j] = Math.min(minutes[i][j], minutes[i][k] + minutes[k][j]);
+            }
+        }
+
+        int[][] result = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) result[i][j] = (int) Math.min(HubLabels.UNREACHABLE, minutes[i][j]);
+        }
+        return result;
+    }
+}
\ No newline at end of file
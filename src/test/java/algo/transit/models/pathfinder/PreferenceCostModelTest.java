@@ -0,0 +1,72 @@
+package algo.transit.models.pathfinder;
+
+import algo.transit.enums.TType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreferenceCostModelTest {
+    private static final List<String> GOALS = List.of("time", "transfers", "walking");
+    private static final List<Map<TType, Double>> WEIGHTS = List.of(
+            Map.of(),
+            Map.of(TType.TRAIN, 0.3, TType.BUS, 2.0),
+            Map.of(TType.FOOT, 0.2, TType.TRAM, 1.5)
+    );
+
+    /**
+     * Searches charge the minimum cost per minute for every minute a lower bound says is left,
+     * so no ride or walk may cost less than that per minute, whatever it waited before
+     */
+    @Test
+    void minimumCostPerMinuteNeverExceedsTheCostOfAMinute() {
+        for (String goal : GOALS) {
+            for (Map<TType, Double> weights : WEIGHTS) {
+                PreferenceCostModel model = PreferenceCostModel.of(preferences(goal, weights));
+                double perMinute = model.minimumCostPerMinute();
+                assertTrue(perMinute >= 0, goal + " " + weights);
+
+                for (TType mode : TType.values()) {
+                    for (long minutes = 0; minutes <= 120; minutes += 7) {
+                        double cost = model.travelCost(mode, 0, minutes);
+                        assertTrue(cost >= perMinute * minutes - 1e-9, goal + " " + weights + " " + mode + " " + minutes);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void minimumCostPerMinuteIsTheCheapestTransitFactor() {
+        PreferenceCostModel model = PreferenceCostModel.of(preferences("time", Map.of(TType.TRAIN, 0.3)));
+
+        assertEquals(0.3, model.minimumCostPerMinute(), 1e-9);
+        assertEquals(30.0, model.travelCost(TType.TRAIN, 0, 100), 1e-9);
+    }
+
+    @Test
+    void waitingAndSwitchingNeverLowerTheCost() {
+        for (String goal : GOALS) {
+            for (Map<TType, Double> weights : WEIGHTS) {
+                PreferenceCostModel model = PreferenceCostModel.of(preferences(goal, weights));
+                for (TType mode : TType.values()) {
+                    for (TType other : TType.values()) assertTrue(model.switchPenalty(mode, other) >= 0);
+                    for (long waiting = 0; waiting < 60; waiting += 5) {
+                        assertTrue(model.travelCost(mode, waiting + 5, 10) >= model.travelCost(mode, waiting, 10));
+                    }
+                }
+            }
+        }
+    }
+
+    private static TPreference preferences(
+            String goal,
+            Map<TType, Double> weights
+    ) {
+        return new TPreference(80.0, 10.0, weights, new ArrayList<>(), goal, null);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+package algo.transit.services;
+
+import algo.transit.models.common.TransitNetwork;
+import algo.transit.utils.Log;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class NetworkReloaderTest {
+
+    @BeforeAll
+    static void quiet() {
+        Log.setLevel(Log.Level.WARN);
+    }
+
+    @Test
+    void reloadsOnlyTheChangedAgency(@TempDir Path root) throws IOException {
+        writeAgency(root, "A", 2);
+        writeAgency(root, "B", 2);
+        NetworkReloader reloader = new NetworkReloader(CSVService.fromDirectory(root, List.of()));
+        TransitNetwork before = reloader.current();
+        Map<String, CSVService.AgencyData> loaded = reloader.agencies();
+
+        writeAgency(root, "B", 3);
+        TransitNetwork after = reloader.reload();
+
+        assertNotSame(before, after);
+        assertSame(after, reloader.current(), "the new network is published");
+        assertSame(loaded.get("A"), reloader.agencies().get("A"), "the unchanged agency is reused as loaded");
+        assertNotSame(loaded.get("B"), reloader.agencies().get("B"));
+        assertSame(before.getTrips().get("A-T0"), after.getTrips().get("A-T0"));
+        assertNotNull(after.getTrips().get("B-T2"));
+        assertNull(before.getTrips().get("B-T2"));
+    }
+
+    @Test
+    void keepsTheNetworkWhenNothingChanged(@TempDir Path root) throws IOException {
+        writeAgency(root, "A", 1);
+        NetworkReloader reloader = new NetworkReloader(CSVService.fromDirectory(root, List.of()));
+        TransitNetwork before = reloader.current();
+
+        assertSame(before, reloader.reload());
+        assertEquals(1, before.getTrips().size());
+    }
+
+    /**
+     * One bus line of the agency between two stops of its own, with the given number of trips.
+     * Every write moves the modification time forward, so a rewrite is seen even within the clock's resolution.
+     */
+    private static void writeAgency(
+            Path root,
+            String name,
+            int trips
+    ) throws IOException {
+        Path directory = Files.createDirectories(root.resolve(name));
+        double latitude = name.equals("A") ? 50.80 : 50.90;
+        write(directory.resolve("stops.csv"), "stop_id,stop_name,stop_lat,stop_lon\n"
+                + name + "-S0,First," + latitude + ",4.30\n"
+                + name + "-S1,Second," + (latitude + 0.01) + ",4.30\n");
+        write(directory.resolve("routes.csv"), "route_id,route_short_name,route_long_name,route_type\n"
+                + name + "-R0,1,Line 1,BUS\n");
+
+        StringBuilder tripRows = new StringBuilder("trip_id,route_id\n");
+        StringBuilder stopTimes = new StringBuilder("trip_id,departure_time,stop_id,stop_sequence\n");
+        for (int t = 0; t < trips; t++) {
+            String tripId = name + "-T" + t;
+            tripRows.append(tripId).append(',').append(name).append("-R0\n");
+            stopTimes.append(tripId).append(",0").append(8 + t).append(":00:00,").append(name).append("-S0,1\n");
+            stopTimes.append(tripId).append(",0").append(8 + t).append(":10:00,").append(name).append("-S1,2\n");
+        }
+        write(directory.resolve("trips.csv"), tripRows.toString());
+        write(directory.resolve("stop_times.csv"), stopTimes.toString());
+    }
+
+    private static void write(
+            Path file,
+            String content
+    ) throws IOException {
+        long modified = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : System.currentTimeMillis();
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified + 2000));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package algo.transit.services;
+
+import algo.transit.models.common.Station;
+import algo.transit.models.common.Stop;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StationServiceTest {
+    // About 111 m of latitude
+    private static final double STEP = 0.001;
+
+    @Test
+    void mergesNearbyStopsSharingAName() {
+        Stop[] stops = {
+                stop("B", "Central", 0),
+                stop("A", " central ", 1),
+                stop("C", "Market", 1)
+        };
+
+        Station[] stations = StationService.cluster(stops);
+
+        Station central = stations[0];
+        assertNotNull(central);
+        assertSame(central, stations[1]);
+        assertNull(stations[2], "a stop with a name of its own stays alone");
+        assertEquals("station:A", central.getStationId());
+        assertEquals(List.of(stops[1], stops[0]), central.getStops());
+        assertEquals(111, central.getDiameter(), 1);
+    }
+
+    @Test
+    void chainsStopsWithinTheRadiusOfEachOther() {
+        // 222 m apart each, so the ends are 444 m apart but still linked through the middle stop
+        Stop[] stops = {stop("A", "Kerk", 0), stop("B", "Kerk", 2), stop("C", "Kerk", 4)};
+
+        Station[] stations = StationService.cluster(stops);
+
+        assertNotNull(stations[0]);
+        assertSame(stations[0], stations[1]);
+        assertSame(stations[0], stations[2]);
+        assertEquals(444, stations[0].getDiameter(), 2);
+    }
+
+    @Test
+    void keepsDistantNamesakesApart() {
+        Stop[] stops = {stop("A", "Kerk", 0), stop("B", "Kerk", 40)};
+
+        Station[] stations = StationService.cluster(stops);
+
+        assertNull(stations[0]);
+        assertNull(stations[1]);
+    }
+
+    @Test
+    void leavesStopsUntouchedAndSkipsGaps() {
+        Stop[] stops = {stop("A", "Central", 0), null, stop("C", "Central", 1)};
+
+        Station[] stations = StationService.cluster(stops);
+
+        assertEquals(3, stations.length);
+        assertNull(stations[1]);
+        assertSame(stations[0], stations[2]);
+        assertEquals("Central", stops[0].getName());
+        assertEquals(0, stops[0].getIndex());
+    }
+
+    @Test
+    void changesPlatformsInTheDirectWalkingTime() {
+        Stop[] stops = {stop("A", "Kerk", 0), stop("B", "Kerk", 1), stop("C", "Kerk", 3)};
+        Station station = StationService.cluster(stops)[0];
+
+        // 111 m at 80 m/min, while crossing the whole 333 m station takes 5 minutes
+        assertEquals(2, station.transferMinutes(stops[0], stops[1], 80.0));
+        assertEquals(5, station.transferMinutes(80.0));
+        assertEquals(5, station.transferMinutes(stops[0], stops[2], 80.0));
+    }
+
+    @Test
+    void changesBetweenAdjacentPlatformsInNoTime() {
+        Stop[] stops = {stop("A", "Kerk", 0), stop("B", "Kerk", 1)};
+        Station station = StationService.cluster(stops)[0];
+
+        // 111 m is a minute and a half at 80 m/min but under one at 120 m/min, which counts as no time as walks do
+        assertEquals(2, station.transferMinutes(stops[0], stops[1], 80.0));
+        assertEquals(0, station.transferMinutes(stops[0], stops[1], 120.0));
+        assertEquals(0, station.transferMinutes(120.0));
+    }
+
+    /**
+     * Stop indexed by its position in the test's array, the given number of steps north of the origin
+     */
+    private static Stop stop(
+            String stopId,
+            String name,
+            int steps
+    ) {
+        Stop stop = new Stop(stopId, name, 50.0 + steps * STEP, 4.0);
+        stop.setIndex(stopId.charAt(0) - 'A');
+        return stop;
+    }
+}
\ No newline at end of file
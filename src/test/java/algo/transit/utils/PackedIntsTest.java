@@ -0,0 +1,57 @@
+package algo.transit.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PackedIntsTest {
+
+    @Test
+    void roundTripsValuesAcrossWordBoundaries() {
+        // 13 bits per value, so values regularly straddle two words
+        int[] values = new int[1000];
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) values[i] = random.nextInt(8192) - 4000;
+
+        PackedInts packed = PackedInts.of(values);
+
+        assertEquals(values.length, packed.size());
+        assertEquals(13, packed.bitsPerValue());
+        for (int i = 0; i < values.length; i++) assertEquals(values[i], packed.get(i), "index " + i);
+    }
+
+    @Test
+    void coversTheFullIntRange() {
+        int[] values = {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1};
+
+        PackedInts packed = PackedInts.of(values);
+
+        assertEquals(32, packed.bitsPerValue());
+        for (int i = 0; i < values.length; i++) assertEquals(values[i], packed.get(i));
+    }
+
+    @Test
+    void storesConstantArraysWithoutBits() {
+        PackedInts packed = PackedInts.of(new int[]{-7, -7, -7});
+
+        assertEquals(0, packed.bitsPerValue());
+        assertEquals(-7, packed.get(0));
+        assertEquals(-7, packed.get(2));
+    }
+
+    @Test
+    void packsEmptyArrays() {
+        PackedInts packed = PackedInts.of(new int[0]);
+
+        assertEquals(0, packed.size());
+        assertEquals(0, packed.bitsPerValue());
+    }
+
+    @Test
+    void usesTheFewestBitsForTheRange() {
+        assertEquals(3, PackedInts.of(new int[]{100, 107, 103}).bitsPerValue());
+        assertEquals(1, PackedInts.of(new int[]{-1, 0}).bitsPerValue());
+    }
+}
\ No newline at end of file